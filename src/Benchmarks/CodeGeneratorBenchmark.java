@@ -0,0 +1,79 @@
+package Benchmarks;
+
+import CodeGenerators.IntermediateCodeGenerator;
+import CodeGenerators.Lowering;
+import CodeGenerators.ObjectCodeGenerator;
+import CodeGenerators.ThreeAddressCode;
+import LexicalAnalysis.Lexer;
+import SemanticAnalysis.SemanticAnalyzer;
+import SyntacticAnalysis.Parser;
+
+public class CodeGeneratorBenchmark {
+    private static final int ROUNDS = 200;
+
+    public static void main(String[] args) {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        Lexer lexer = new Lexer();
+        if (!lexer.scan(generateProgram(statements))) {
+            throw new IllegalStateException("The generated program has lexical errors");
+        }
+        Parser parser = new Parser();
+        parser.initialize(lexer.getTokenStream());
+        if (!parser.parse()) {
+            throw new IllegalStateException("The generated program has syntax errors");
+        }
+        SemanticAnalyzer semanticAnalyzer = new SemanticAnalyzer();
+        semanticAnalyzer.initialize(parser.getSyntaxTree());
+        if (!semanticAnalyzer.analyze()) {
+            throw new IllegalStateException("The generated program has semantic errors");
+        }
+        Lowering lowering = new Lowering();
+        IntermediateCodeGenerator intermediateCodeGenerator = new IntermediateCodeGenerator();
+        ObjectCodeGenerator objectCodeGenerator = new ObjectCodeGenerator();
+        long bestLowering = Long.MAX_VALUE, bestIntermediate = Long.MAX_VALUE, bestObject = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            lowering.initialize(parser.getSyntaxTree(), semanticAnalyzer.getSymbols());
+            ThreeAddressCode threeAddressCode = lowering.lower();
+            bestLowering = Math.min(bestLowering, System.nanoTime() - start);
+            start = System.nanoTime();
+            intermediateCodeGenerator.initialize(threeAddressCode);
+            intermediateCodeGenerator.getIntermediateCode();
+            bestIntermediate = Math.min(bestIntermediate, System.nanoTime() - start);
+            start = System.nanoTime();
+            objectCodeGenerator.initialize(threeAddressCode);
+            objectCodeGenerator.getObjectCode();
+            bestObject = Math.min(bestObject, System.nanoTime() - start);
+        }
+        System.out.println("Program: " + statements + " statements, " + semanticAnalyzer.getSymbols().size() + " symbols");
+        System.out.printf("Lowering:          %.3f ms%n", bestLowering / 1e6);
+        System.out.printf("Intermediate code: %.3f ms%n", bestIntermediate / 1e6);
+        System.out.printf("Object code:       %.3f ms%n", bestObject / 1e6);
+    }
+
+    // Declares a few variables and then keeps assigning, comparing and printing them
+    static String generateProgram(int statements) {
+        StringBuilder stringBuilder = new StringBuilder(statements * 24);
+        stringBuilder.append("code Benchmark {\n");
+        int variables = Math.max(1, statements / 100);
+        for (int i = 0; i < variables; i++) {
+            String name = ParserBenchmark.getName(i);
+            stringBuilder.append("\tint ").append(name).append(";\n");
+            stringBuilder.append("\tboolean b").append(name).append(";\n");
+        }
+        for (int i = 0; i < statements; i++) {
+            String name = ParserBenchmark.getName(i % variables), next = ParserBenchmark.getName((i + 1) % variables);
+            switch (i % 4) {
+                case 0 -> stringBuilder.append("\t").append(name).append(" = ").append(i).append(" + ").append(next).append(" - 7;\n");
+                case 1 -> {
+                    stringBuilder.append("\twhile (").append(name).append(" < ").append(next).append(") {\n");
+                    stringBuilder.append("\t\t").append(name).append(" = ").append(name).append(" + 1;\n\t}\n");
+                }
+                case 2 -> stringBuilder.append("\tprint(").append(name).append(");\n");
+                default -> stringBuilder.append("\tb").append(name).append(" = true;\n");
+            }
+        }
+        stringBuilder.append("}\n");
+        return stringBuilder.toString();
+    }
+}
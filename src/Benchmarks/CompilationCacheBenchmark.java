@@ -0,0 +1,61 @@
+package Benchmarks;
+
+import Caching.CompilationCache;
+import LexicalAnalysis.Lexer;
+import SemanticAnalysis.SemanticAnalyzer;
+import SyntacticAnalysis.Parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class CompilationCacheBenchmark {
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String source = ParserBenchmark.generateProgram(statements);
+        Path directory = Files.createTempDirectory("compiler-cache");
+        CompilationCache cache = new CompilationCache(directory);
+
+        long uncached = time(source, cache);
+        cache.setEnabled(true);
+        long start = System.nanoTime();
+        compile(source, cache);
+        long firstCompile = System.nanoTime() - start;
+        long cached = time(source, cache);
+
+        long size = 0;
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                size += Files.size(file);
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+
+        System.out.println("Program: " + statements + " statements, " + source.length() + " characters");
+        System.out.printf("Without cache:        %7.1f ms%n", uncached / 1e6);
+        System.out.printf("Miss (compile+store): %7.1f ms%n", firstCompile / 1e6);
+        System.out.printf("Hit (mapped read):    %7.1f ms%n", cached / 1e6);
+        System.out.printf("Cache file:           %7.1f MB%n", size / 1048576.0);
+        System.out.println("Hits: " + cache.getHits() + ", misses: " + cache.getMisses());
+    }
+
+    private static long time(String source, CompilationCache cache) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            compile(source, cache);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void compile(String source, CompilationCache cache) {
+        CompilationCache.Result result = cache.compile(source, new Lexer(), new Parser(), new SemanticAnalyzer());
+        if (!result.scanned() || !result.parsed()) {
+            throw new IllegalStateException("The generated program has errors");
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package Benchmarks;
+
+import Caching.CompilationCache;
+import Compilation.CompilerSession;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Compiles the same programs on many threads at once, one session per thread, and fails if any result differs from
+// compiling them one after the other
+public class ConcurrentCompilationBenchmark {
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int programCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+        List<String> programs = new ArrayList<>();
+        Random random = new Random(17);
+        for (int i = 0; i < programCount; i++) {
+            programs.add(generateProgram(random, 20 + random.nextInt(200)));
+        }
+        CompilerSession session = new CompilerSession();
+        List<CompilerSession.Result> expected = new ArrayList<>();
+        for (String program : programs) {
+            expected.add(session.compile(program));
+        }
+        run("1 thread", programs, expected, 1, null);
+        run(threads + " threads", programs, expected, threads, null);
+        Path directory = Files.createTempDirectory("compiler-cache");
+        CompilationCache compilationCache = new CompilationCache(directory);
+        compilationCache.setEnabled(true);
+        run(threads + " threads, shared cache", programs, expected, threads, compilationCache);
+        System.out.println("Cache hits: " + compilationCache.getHits() + ", misses: " + compilationCache.getMisses());
+        deleteDirectory(directory);
+    }
+
+    private static void run(String name, List<String> programs, List<CompilerSession.Result> expected, int threads,
+                            CompilationCache compilationCache) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> mismatches = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            mismatches.add(executor.submit(() -> compileAll(programs, expected, compilationCache, seed)));
+        }
+        int mismatchCount = 0;
+        for (Future<Integer> future : mismatches) {
+            mismatchCount += future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        if (mismatchCount > 0) {
+            throw new IllegalStateException(name + ": " + mismatchCount + " compilations differ from the sequential ones");
+        }
+        long compilations = (long) threads * ROUNDS * programs.size();
+        System.out.printf("%-28s %8d compilations, %8.0f compilations/s%n", name + ":", compilations, compilations / (elapsed / 1e9));
+    }
+
+    // Every thread compiles all the programs in its own order, so different sessions work on different programs
+    private static int compileAll(List<String> programs, List<CompilerSession.Result> expected,
+                                  CompilationCache compilationCache, int seed) {
+        CompilerSession session = new CompilerSession(compilationCache);
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < programs.size(); i++) {
+            order.add(i);
+        }
+        Random random = new Random(seed);
+        int mismatchCount = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            Collections.shuffle(order, random);
+            for (int i : order) {
+                if (!session.compile(programs.get(i)).equals(expected.get(i))) {
+                    mismatchCount++;
+                }
+            }
+        }
+        return mismatchCount;
+    }
+
+    // Some of them use an undeclared variable or miss a ';' so the failing paths run concurrently too
+    static String generateProgram(Random random, int statements) {
+        int variables = 1 + random.nextInt(8);
+        StringBuilder stringBuilder = new StringBuilder(statements * 24);
+        stringBuilder.append("code Concurrent {\n");
+        for (int i = 0; i < variables; i++) {
+            String name = ParserBenchmark.getName(i);
+            stringBuilder.append("int ").append(name).append(";\n");
+            stringBuilder.append("boolean b").append(name).append(";\n");
+            stringBuilder.append("string s").append(name).append(";\n");
+        }
+        int open = 0;
+        for (int i = 0; i < statements; i++) {
+            String name = ParserBenchmark.getName(random.nextInt(variables));
+            String other = ParserBenchmark.getName(random.nextInt(variables));
+            switch (random.nextInt(9)) {
+                case 0, 1 -> stringBuilder.append(name).append(" = ").append(random.nextInt(1000)).append(" + ")
+                        .append(other).append(" - ").append(name).append(";\n");
+                case 2 -> stringBuilder.append("b").append(name).append(" = ").append(random.nextBoolean()).append(";\n");
+                case 3 -> stringBuilder.append("s").append(name).append(" = \"text ").append(i).append("\";\n");
+                case 4 -> stringBuilder.append("print(").append(random.nextBoolean() ? name : "s" + name).append(");\n");
+                case 5 -> stringBuilder.append("scan(").append(name).append(");\n");
+                case 6 -> {
+                    if (open < 3) {
+                        stringBuilder.append("while (").append(name).append(" < ").append(other).append(") {\n");
+                        open++;
+                    }
+                }
+                case 7 -> {
+                    if (open < 3) {
+                        stringBuilder.append("if (").append(random.nextBoolean() ? name : random.nextInt(3)).append(" == ")
+                                .append(random.nextBoolean() ? other : random.nextInt(3)).append(") {\n");
+                        open++;
+                    }
+                }
+                default -> {
+                    if (open > 0) {
+                        stringBuilder.append("}\n");
+                        open--;
+                    }
+                }
+            }
+        }
+        stringBuilder.append("}\n".repeat(open));
+        int error = random.nextInt(10);
+        if (error == 0) {
+            stringBuilder.append("undeclared = 1;\n");
+        }
+        else if (error == 1) {
+            stringBuilder.append(ParserBenchmark.getName(0)).append(" = 1\n");
+        }
+        stringBuilder.append("}\n");
+        return stringBuilder.toString();
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (var paths = Files.list(directory)) {
+            for (Path path : paths.toList()) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+}
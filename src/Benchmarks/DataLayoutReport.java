@@ -0,0 +1,53 @@
+package Benchmarks;
+
+import Compilation.CompilerSession;
+import SyntacticAnalysis.SymbolTable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Prints the data layout of every program given, or of a generated one, and its size against the original layout,
+// where every variable had bytes of its own in declaration order and every string took 100 bytes
+public class DataLayoutReport {
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            report("generated program", generateSiblingBlocksProgram(20));
+        }
+        for (String arg : args) {
+            report(arg, Files.readString(Path.of(arg)));
+        }
+    }
+
+    private static void report(String name, String source) {
+        CompilerSession session = new CompilerSession();
+        CompilerSession.Result result = session.compile(source);
+        if (!result.analyzed()) {
+            System.out.println(name + ": not analyzed");
+            return;
+        }
+        System.out.println(name + ":");
+        System.out.print(SymbolTable.getLayoutReport(session.getSemanticAnalyzer().getSymbols()));
+    }
+
+    // Blocks one after the other, each with its own boolean, string and int
+    static String generateSiblingBlocksProgram(int blocks) {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("code Layout {\n");
+        stringBuilder.append("int count;\n");
+        for (int i = 0; i < blocks; i++) {
+            String name = ParserBenchmark.getName(i);
+            stringBuilder.append("while (count < ").append(i + 1).append(") {\n");
+            stringBuilder.append("\tboolean b").append(name).append(";\n");
+            stringBuilder.append("\tstring s").append(name).append(";\n");
+            stringBuilder.append("\tint ").append(name).append(";\n");
+            stringBuilder.append("\ts").append(name).append(" = \"block\";\n");
+            stringBuilder.append("\tprint(s").append(name).append(");\n");
+            stringBuilder.append("\t").append(name).append(" = count + 1;\n");
+            stringBuilder.append("\tcount = ").append(name).append(";\n");
+            stringBuilder.append("}\n");
+        }
+        stringBuilder.append("}\n");
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package Benchmarks;
+
+import LexicalAnalysis.Lexer;
+import SyntacticAnalysis.Parser;
+
+public class IncrementalParserBenchmark {
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        int[] sizes = {10_000, 100_000, 1_000_000};
+        for (int statements : sizes) {
+            run(statements);
+        }
+    }
+
+    private static void run(int statements) {
+        String source = ParserBenchmark.generateProgram(statements);
+        Lexer lexer = new Lexer();
+        if (!lexer.scan(source)) {
+            throw new IllegalStateException("The generated program has lexical errors");
+        }
+        Parser parser = new Parser();
+        long fullParse = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS / 4; i++) {
+            parser.initialize(lexer.getTokenStream());
+            long start = System.nanoTime();
+            parser.parse();
+            fullParse = Math.min(fullParse, System.nanoTime() - start);
+        }
+        lexer.clearEdit();
+
+        // Changes a literal in the middle of the program, which keeps the number of tokens and nodes
+        int literal = source.indexOf(" + 10 - ", source.length() / 2) + 3;
+        long changeLiteral = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            source = source.substring(0, literal) + (i % 2 == 0 ? "12" : "10") + source.substring(literal + 2);
+            lexer.update(source, literal, 2, 2);
+            changeLiteral = Math.min(changeLiteral, reparse(lexer, parser));
+        }
+
+        // Inserts and then removes a statement in the middle, which moves every node and token after it
+        String statement = "\tprint(inserted);\n";
+        int line = source.indexOf('\n', source.length() / 2) + 1;
+        long insertStatement = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            if (i % 2 == 0) {
+                source = source.substring(0, line) + statement + source.substring(line);
+                lexer.update(source, line, 0, statement.length());
+            }
+            else {
+                source = source.substring(0, line) + source.substring(line + statement.length());
+                lexer.update(source, line, statement.length(), 0);
+            }
+            insertStatement = Math.min(insertStatement, reparse(lexer, parser));
+        }
+
+        System.out.println("Program: " + statements + " statements, " + lexer.getTokenCount() + " tokens");
+        System.out.printf("Full parse:         %8.3f ms%n", fullParse / 1e6);
+        System.out.printf("Changed literal:    %8.3f ms%n", changeLiteral / 1e6);
+        System.out.printf("Inserted statement: %8.3f ms%n", insertStatement / 1e6);
+    }
+
+    private static long reparse(Lexer lexer, Parser parser) {
+        parser.initialize(lexer.getTokenStream());
+        long start = System.nanoTime();
+        if (!parser.reparse(lexer.getEdit())) {
+            throw new IllegalStateException("The edited program has syntax errors");
+        }
+        long time = System.nanoTime() - start;
+        lexer.clearEdit();
+        return time;
+    }
+}
@@ -0,0 +1,66 @@
+package Benchmarks;
+
+import LexicalAnalysis.Lexer;
+import LexicalAnalysis.TokenBuffer;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class LexerBenchmark {
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        String source = generateSource(megabytes << 20);
+        System.out.println("Source: " + source.length() + " chars, "
+                + ForkJoinPool.getCommonPoolParallelism() + " worker threads");
+
+        Lexer sequential = new Lexer();
+        Lexer parallel = new Lexer();
+        parallel.setParallel(true);
+        long sequentialTime = measure(sequential, source);
+        long parallelTime = measure(parallel, source);
+        if (!sameTokens(sequential.getTokenBuffer(), parallel.getTokenBuffer())) {
+            throw new IllegalStateException("The parallel scan produced different tokens");
+        }
+        System.out.println("Tokens: " + sequential.getTokenCount());
+        System.out.printf("Sequential: %d ms%n", sequentialTime / 1_000_000);
+        System.out.printf("Parallel:   %d ms%n", parallelTime / 1_000_000);
+        System.out.printf("Speedup:    %.2fx%n", (double) sequentialTime / parallelTime);
+    }
+
+    private static long measure(Lexer lexer, String source) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            lexer.scan(source);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static boolean sameTokens(TokenBuffer a, TokenBuffer b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.getKind(i) != b.getKind(i) || a.getStart(i) != b.getStart(i) || a.getEnd(i) != b.getEnd(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String generateSource(int length) {
+        StringBuilder stringBuilder = new StringBuilder(length + 256);
+        stringBuilder.append("code Benchmark {\n");
+        for (int i = 0; stringBuilder.length() < length; i++) {
+            stringBuilder.append("\tint value").append(i).append(";\n");
+            stringBuilder.append("\tvalue").append(i).append(" = ").append(i).append(" + 10 - 5;\n");
+            stringBuilder.append("\tstring text").append(i).append(";\n");
+            stringBuilder.append("\ttext").append(i).append(" = \"some text with spaces ").append(i).append("\";\n");
+            stringBuilder.append("\tif (value").append(i).append(" <= 100) {\n\t\tprint(text").append(i).append(");\n\t}\n");
+        }
+        stringBuilder.append("}\n");
+        return stringBuilder.toString();
+    }
+}
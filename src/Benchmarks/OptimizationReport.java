@@ -0,0 +1,44 @@
+package Benchmarks;
+
+import Compilation.CompilerSession;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Compiles every program given, or the sample program of the editor, with and without the optimizations and prints
+// how many instructions and bytes of object code they save, how many of those bytes the peephole saves and how many
+// ints the loops keep in registers
+public class OptimizationReport {
+    public static void main(String[] args) throws IOException {
+        String[] files = args.length > 0 ? args : new String[]{"TextFiles/codiguin.txt"};
+        CompilerSession plain = new CompilerSession(), optimized = new CompilerSession();
+        plain.setOptimizing(false);
+        System.out.printf("%-40s %13s %13s %8s %8s %9s %9s%n", "Program", "Instructions", "Bytes", "Folded", "Removed",
+                "Peephole", "Allocated");
+        int totalInstructions = 0, totalSavedInstructions = 0, totalBytes = 0, totalSavedBytes = 0;
+        for (String file : files) {
+            String source = Files.readString(Path.of(file));
+            if (!plain.compile(source).analyzed() || !optimized.compile(source).analyzed()) {
+                System.out.printf("%-40s not analyzed%n", file);
+                continue;
+            }
+            int instructions = plain.getObjectCodeGenerator().getInstructionCount();
+            int bytes = plain.getObjectCodeGenerator().getCodeSize();
+            int savedInstructions = instructions - optimized.getObjectCodeGenerator().getInstructionCount();
+            int savedBytes = bytes - optimized.getObjectCodeGenerator().getCodeSize();
+            System.out.printf("%-40s %6d -%-6d %6d -%-6d %8d %8d %9s %9d%n", file, instructions, savedInstructions, bytes, savedBytes,
+                    optimized.getConstantFolding().getFoldedCount(), optimized.getDeadCodeElimination().getRemovedCount(),
+                    "-" + optimized.getObjectCodeGenerator().getSavedBytes() + " B",
+                    optimized.getRegisterAllocation().getAllocatedCount());
+            totalInstructions += instructions;
+            totalSavedInstructions += savedInstructions;
+            totalBytes += bytes;
+            totalSavedBytes += savedBytes;
+        }
+        if (files.length > 1) {
+            System.out.printf("%-40s %6d -%-6d %6d -%-6d%n", "Total", totalInstructions, totalSavedInstructions,
+                    totalBytes, totalSavedBytes);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package Benchmarks;
+
+import LexicalAnalysis.Lexer;
+import SemanticAnalysis.SemanticAnalyzer;
+import SyntacticAnalysis.AbstractSyntaxTree;
+import SyntacticAnalysis.Parser;
+import Utilities.Symbols;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+// Analyzes a program made of many large sibling blocks in order and then in pools of more and more threads, and
+// fails if a parallel analysis gives other symbols or another result than the sequential one
+public class ParallelSemanticBenchmark {
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int statements = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        AbstractSyntaxTree valid = parse(generateSiblingBlocksProgram(blocks, statements, false));
+        AbstractSyntaxTree invalid = parse(generateSiblingBlocksProgram(blocks, statements, true));
+        System.out.println("Program: " + blocks + " blocks, " + valid.size() + " nodes, "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+
+        SemanticAnalyzer sequential = new SemanticAnalyzer();
+        SemanticAnalyzer parallel = new SemanticAnalyzer();
+        parallel.setParallel(true);
+        // Both modes run once before timing, so neither is measured while the JIT is still compiling it
+        measure(sequential, valid, null, true);
+        measure(parallel, valid, null, true);
+        long sequentialTime = measure(sequential, valid, null, true);
+        byte[] expectedSymbols = getBytes(sequential.getSymbols());
+        int[] expectedNodes = getNodeSymbols(valid);
+        measure(sequential, invalid, null, false);
+        byte[] expectedInvalidSymbols = getBytes(sequential.getSymbols());
+        int[] expectedInvalidNodes = getNodeSymbols(invalid);
+        System.out.printf("Sequential:   %8.2f ms%n", sequentialTime / 1e6);
+
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long time = pool.submit(() -> measure(parallel, valid, expectedNodes, true)).get();
+            if (!Arrays.equals(getBytes(parallel.getSymbols()), expectedSymbols)) {
+                throw new IllegalStateException(threads + " threads: the symbols differ from the sequential analysis");
+            }
+            pool.submit(() -> measure(parallel, invalid, expectedInvalidNodes, false)).get();
+            if (!Arrays.equals(getBytes(parallel.getSymbols()), expectedInvalidSymbols)) {
+                throw new IllegalStateException(threads + " threads: the failed analysis differs from the sequential one");
+            }
+            pool.shutdown();
+            System.out.printf("%2d threads:   %8.2f ms, %5.2fx%n", threads, time / 1e6, (double) sequentialTime / time);
+        }
+    }
+
+    private static long measure(SemanticAnalyzer semanticAnalyzer, AbstractSyntaxTree syntaxTree, int[] expectedNodes,
+                                boolean expectedResult) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            semanticAnalyzer.initialize(syntaxTree);
+            long start = System.nanoTime();
+            boolean result = semanticAnalyzer.analyze();
+            best = Math.min(best, System.nanoTime() - start);
+            if (result != expectedResult) {
+                throw new IllegalStateException("The analysis returned " + result + " instead of " + expectedResult);
+            }
+            if (expectedNodes != null && !Arrays.equals(getNodeSymbols(syntaxTree), expectedNodes)) {
+                throw new IllegalStateException("The nodes were given other symbols than in the sequential analysis");
+            }
+        }
+        return best;
+    }
+
+    private static AbstractSyntaxTree parse(String source) {
+        Lexer lexer = new Lexer();
+        if (!lexer.scan(source)) {
+            throw new IllegalStateException("The generated program has lexical errors");
+        }
+        Parser parser = new Parser();
+        parser.initialize(lexer.getTokenStream());
+        if (!parser.parse()) {
+            throw new IllegalStateException("The generated program has syntax errors");
+        }
+        return parser.getSyntaxTree();
+    }
+
+    private static int[] getNodeSymbols(AbstractSyntaxTree syntaxTree) {
+        int[] nodeSymbols = new int[syntaxTree.size()];
+        for (int node = 0; node < nodeSymbols.length; node++) {
+            nodeSymbols[node] = syntaxTree.getSymbol(node);
+        }
+        return nodeSymbols;
+    }
+
+    private static byte[] getBytes(Symbols symbols) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        symbols.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    // A few globals and then blocks one after the other, each declaring its own variables and using them with the
+    // globals. With an error, a block near the end uses a variable that is only declared in another block
+    static String generateSiblingBlocksProgram(int blocks, int statements, boolean withError) {
+        StringBuilder stringBuilder = new StringBuilder(blocks * statements * 24);
+        stringBuilder.append("code Parallel {\n");
+        stringBuilder.append("int count;\n");
+        stringBuilder.append("string text;\n");
+        for (int i = 0; i < blocks; i++) {
+            String name = ParserBenchmark.getName(i);
+            stringBuilder.append("while (count < ").append(i + 1).append(") {\n");
+            stringBuilder.append("\tint ").append(name).append(";\n");
+            stringBuilder.append("\tboolean b").append(name).append(";\n");
+            for (int j = 0; j < statements; j++) {
+                switch (j % 4) {
+                    case 0 -> stringBuilder.append("\t").append(name).append(" = count + ").append(j).append(" - ").append(name).append(";\n");
+                    case 1 -> stringBuilder.append("\tb").append(name).append(" = ").append(j % 8 == 1).append(";\n");
+                    case 2 -> stringBuilder.append("\ttext = \"block\";\n");
+                    default -> stringBuilder.append("\tprint(").append(name).append(");\n");
+                }
+            }
+            if (withError && i == blocks - 2) {
+                stringBuilder.append("\t").append(ParserBenchmark.getName(0)).append(" = 1;\n");
+            }
+            stringBuilder.append("\tcount = ").append(name).append(";\n");
+            stringBuilder.append("}\n");
+        }
+        stringBuilder.append("}\n");
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,83 @@
+package Benchmarks;
+
+import LexicalAnalysis.Lexer;
+import SyntacticAnalysis.Parser;
+
+public class ParserBenchmark {
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        run(statements + " statements", generateProgram(statements), statements);
+        run("nesting depth " + depth, generateNestedProgram(depth), depth * 2);
+    }
+
+    private static void run(String name, String source, int statements) {
+        Lexer lexer = new Lexer();
+        if (!lexer.scan(source)) {
+            throw new IllegalStateException("The generated program has lexical errors");
+        }
+        Parser parser = new Parser();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            parser.initialize(lexer.getTokenStream());
+            long start = System.nanoTime();
+            if (!parser.parse()) {
+                throw new IllegalStateException("The generated program has syntax errors");
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.println("Program: " + name + ", " + lexer.getTokenCount() + " tokens");
+        System.out.printf("Parse:      %d ms%n", best / 1_000_000);
+        System.out.printf("Throughput: %.0f statements/s%n", statements / (best / 1e9));
+    }
+
+    static String generateProgram(int statements) {
+        StringBuilder stringBuilder = new StringBuilder(statements * 24);
+        stringBuilder.append("code Benchmark {\n");
+        int count = 0;
+        for (int i = 0; count < statements; i++) {
+            String name = getName(i / 6);
+            switch (i % 6) {
+                case 0 -> stringBuilder.append("\tint ").append(name).append(";\n");
+                case 1 -> stringBuilder.append("\t").append(name).append(" = ").append(i).append(" + 10 - ").append(name).append(";\n");
+                case 2 -> stringBuilder.append("\tprint(").append(name).append(");\n");
+                case 3 -> stringBuilder.append("\tscan(").append(name).append(");\n");
+                case 4 -> {
+                    stringBuilder.append("\twhile (").append(name).append(" < 100) {\n");
+                    stringBuilder.append("\t\t").append(name).append(" = ").append(name).append(" + 1;\n\t}\n");
+                    count++;
+                }
+                default -> {
+                    stringBuilder.append("\tif (").append(name).append(" == 5) {\n");
+                    stringBuilder.append("\t\tprint(").append(name).append(");\n\t}\n");
+                    count++;
+                }
+            }
+            count++;
+        }
+        stringBuilder.append("}\n");
+        return stringBuilder.toString();
+    }
+
+    static String generateNestedProgram(int depth) {
+        StringBuilder stringBuilder = new StringBuilder(depth * 48);
+        stringBuilder.append("code Benchmark {\n");
+        for (int i = 0; i < depth; i++) {
+            stringBuilder.append("int ").append(getName(i)).append(";\n");
+            stringBuilder.append("while (").append(getName(i)).append(" < 100) {\n");
+        }
+        stringBuilder.append("}\n".repeat(depth + 1));
+        return stringBuilder.toString();
+    }
+
+    static String getName(int index) {
+        StringBuilder name = new StringBuilder("value");
+        do {
+            name.append((char) ('a' + index % 26));
+            index /= 26;
+        } while (index > 0);
+        return name.toString();
+    }
+}
@@ -0,0 +1,60 @@
+package Benchmarks;
+
+import LexicalAnalysis.Lexer;
+import SemanticAnalysis.SemanticAnalyzer;
+import SyntacticAnalysis.Parser;
+
+public class ScopeResolutionBenchmark {
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        int uses = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int[] depths = {1, 10, 100, 1000};
+        for (int depth : depths) {
+            run(depth, uses);
+        }
+    }
+
+    private static void run(int depth, int uses) {
+        Lexer lexer = new Lexer();
+        if (!lexer.scan(generateNestedIfProgram(depth, uses))) {
+            throw new IllegalStateException("The generated program has lexical errors");
+        }
+        Parser parser = new Parser();
+        parser.initialize(lexer.getTokenStream());
+        if (!parser.parse()) {
+            throw new IllegalStateException("The generated program has syntax errors");
+        }
+        SemanticAnalyzer semanticAnalyzer = new SemanticAnalyzer();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            semanticAnalyzer.initialize(parser.getSyntaxTree());
+            long start = System.nanoTime();
+            if (!semanticAnalyzer.analyze()) {
+                throw new IllegalStateException("The generated program has semantic errors");
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        // Every statement in the innermost block resolves the outermost and the innermost variable twice
+        int lookups = uses * 4 + depth;
+        System.out.printf("Depth %4d: %6.2f ms, %5.1f ns/lookup%n", depth, best / 1e6, (double) best / lookups);
+    }
+
+    // Every level declares a variable and opens an if that uses it, and the innermost block uses the first and last
+    static String generateNestedIfProgram(int depth, int uses) {
+        StringBuilder stringBuilder = new StringBuilder(depth * 40 + uses * 40);
+        stringBuilder.append("code Benchmark {\n");
+        for (int i = 0; i < depth; i++) {
+            String name = ParserBenchmark.getName(i);
+            stringBuilder.append("int ").append(name).append(";\n");
+            stringBuilder.append("if (").append(name).append(" < 1) {\n");
+        }
+        String first = ParserBenchmark.getName(0), last = ParserBenchmark.getName(depth - 1);
+        for (int i = 0; i < uses; i++) {
+            stringBuilder.append(first).append(" = ").append(last).append(" + ").append(first).append(";\n");
+            stringBuilder.append(last).append(" = ").append(first).append(";\n");
+        }
+        stringBuilder.append("}\n".repeat(depth + 1));
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,61 @@
+package Benchmarks;
+
+import LexicalAnalysis.Lexer;
+import SyntacticAnalysis.AbstractSyntaxTree;
+import SyntacticAnalysis.Parser;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+
+public class SyntaxTreeMemoryBenchmark {
+    public static void main(String[] args) {
+        int statements = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Lexer lexer = new Lexer();
+        if (!lexer.scan(ParserBenchmark.generateProgram(statements))) {
+            throw new IllegalStateException("The generated program has lexical errors");
+        }
+        Parser warmUp = new Parser();
+        for (int i = 0; i < 3; i++) {
+            warmUp.initialize(lexer.getTokenStream());
+            warmUp.parse();
+        }
+        warmUp = null;
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long usedBefore = getUsedMemory();
+        long collectionsBefore = getCollectionCount();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        Parser parser = new Parser();
+        parser.initialize(lexer.getTokenStream());
+        if (!parser.parse()) {
+            throw new IllegalStateException("The generated program has syntax errors");
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        long collections = getCollectionCount() - collectionsBefore;
+        AbstractSyntaxTree syntaxTree = parser.getSyntaxTree();
+        long retained = getUsedMemory() - usedBefore;
+        Reference.reachabilityFence(syntaxTree);
+
+        System.out.println("Program:   " + statements + " statements, " + lexer.getTokenCount() + " tokens");
+        System.out.printf("Retained:  %.1f MB (%.1f bytes/statement)%n", retained / 1048576.0, (double) retained / statements);
+        System.out.printf("Allocated: %.1f MB (%.1f bytes/statement)%n", allocated / 1048576.0, (double) allocated / statements);
+        System.out.println("GC runs:   " + collections);
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long getCollectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += collector.getCollectionCount();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,213 @@
+package Caching;
+
+import LexicalAnalysis.Lexer;
+import LexicalAnalysis.TokenBuffer;
+import SemanticAnalysis.SemanticAnalyzer;
+import SyntacticAnalysis.AbstractSyntaxTree;
+import SyntacticAnalysis.Parser;
+import Utilities.Diagnostic;
+import Utilities.IdentifierPool;
+import Utilities.Serialization;
+import Utilities.Symbols;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Keeps the results of earlier compilations in files named after a hash of their source
+public class CompilationCache {
+    public static final String COMPILER_VERSION = "5";
+    private static final int MAGIC = 0x41544d43;
+    private final Path directory;
+    private final AtomicInteger hits, misses;
+    private volatile boolean enabled;
+
+    public record Result(boolean scanned, boolean parsed, boolean analyzed) {
+    }
+
+    public CompilationCache(Path directory) {
+        this.directory = directory;
+        hits = new AtomicInteger();
+        misses = new AtomicInteger();
+    }
+
+    public Result compile(CharSequence source, Lexer lexer, Parser parser, SemanticAnalyzer semanticAnalyzer) {
+        if (!enabled) {
+            return run(source, lexer, parser, semanticAnalyzer);
+        }
+        Path path = directory.resolve(getKey(source) + ".bin");
+        Result result = load(path, source, lexer, parser, semanticAnalyzer);
+        if (result != null) {
+            hits.incrementAndGet();
+            return result;
+        }
+        misses.incrementAndGet();
+        result = run(source, lexer, parser, semanticAnalyzer);
+        store(path, source, lexer, parser, semanticAnalyzer, result);
+        return result;
+    }
+
+    private static Result run(CharSequence source, Lexer lexer, Parser parser, SemanticAnalyzer semanticAnalyzer) {
+        if (!lexer.scan(source)) {
+            return new Result(false, false, false);
+        }
+        parser.initialize(lexer.getTokenStream());
+        boolean parsed = parser.parse();
+        semanticAnalyzer.initialize(parser.getSyntaxTree());
+        boolean analyzed = semanticAnalyzer.analyze();
+        return new Result(true, parsed, analyzed);
+    }
+
+    private static String getKey(CharSequence source) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every Java platform must support SHA-256", e);
+        }
+        digest.update(COMPILER_VERSION.getBytes(StandardCharsets.UTF_8));
+        // ASCII characters are hashed as one byte and any other as 0xff followed by its two bytes
+        byte[] bytes = new byte[1 << 13];
+        int count = 0;
+        for (int i = 0; i < source.length(); i++) {
+            if (count > bytes.length - 3) {
+                digest.update(bytes, 0, count);
+                count = 0;
+            }
+            char c = source.charAt(i);
+            if (c < 0x80) {
+                bytes[count++] = (byte) c;
+            }
+            else {
+                bytes[count++] = (byte) 0xff;
+                bytes[count++] = (byte) (c >>> 8);
+                bytes[count++] = (byte) c;
+            }
+        }
+        digest.update(bytes, 0, count);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static Result load(Path path, CharSequence source, Lexer lexer, Parser parser, SemanticAnalyzer semanticAnalyzer) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32 checksum = new CRC32();
+            checksum.update(in.slice(0, in.limit() - Long.BYTES));
+            if (checksum.getValue() != in.getLong(in.limit() - Long.BYTES)) {
+                return null;
+            }
+            in.limit(in.limit() - Long.BYTES);
+            if (in.getInt() != MAGIC || !Serialization.readString(in).equals(COMPILER_VERSION)
+                    || in.getInt() != source.length()) {
+                return null;
+            }
+            boolean scanned = in.get() != 0, parsed = in.get() != 0, analyzed = in.get() != 0;
+            TokenBuffer tokens = TokenBuffer.read(in);
+            IdentifierPool identifiers = new IdentifierPool();
+            int identifierCount = in.getInt();
+            for (int i = 0; i < identifierCount; i++) {
+                identifiers.intern(Serialization.readString(in));
+            }
+            if (!scanned) {
+                lexer.load(source, tokens, identifiers);
+                return new Result(false, false, false);
+            }
+            AbstractSyntaxTree syntaxTree = AbstractSyntaxTree.read(in, identifiers);
+            ArrayList<Diagnostic> errors = new ArrayList<>();
+            int errorCount = in.getInt();
+            for (int i = 0; i < errorCount; i++) {
+                int position = in.getInt();
+                errors.add(new Diagnostic(position, Serialization.readString(in)));
+            }
+            Symbols symbols = Symbols.read(in);
+            lexer.load(source, tokens, identifiers);
+            parser.initialize(lexer.getTokenStream());
+            parser.load(syntaxTree, errors);
+            semanticAnalyzer.load(syntaxTree, symbols);
+            return new Result(true, parsed, analyzed);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void store(Path path, CharSequence source, Lexer lexer, Parser parser, SemanticAnalyzer semanticAnalyzer, Result result) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, "entry", ".tmp");
+            CheckedOutputStream checkedOut = new CheckedOutputStream(Files.newOutputStream(temporary), new CRC32());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checkedOut, 1 << 16))) {
+                out.writeInt(MAGIC);
+                Serialization.writeString(out, COMPILER_VERSION);
+                out.writeInt(source.length());
+                out.writeBoolean(result.scanned());
+                out.writeBoolean(result.parsed());
+                out.writeBoolean(result.analyzed());
+                lexer.getTokenBuffer().write(out);
+                IdentifierPool identifiers = lexer.getIdentifiers();
+                out.writeInt(identifiers.size());
+                for (int i = 0; i < identifiers.size(); i++) {
+                    Serialization.writeString(out, identifiers.getName(i));
+                }
+                if (result.scanned()) {
+                    parser.getSyntaxTree().write(out);
+                    List<Diagnostic> errors = parser.getErrors();
+                    out.writeInt(errors.size());
+                    for (Diagnostic error : errors) {
+                        out.writeInt(error.position());
+                        Serialization.writeString(out, error.message());
+                    }
+                    semanticAnalyzer.getSymbols().write(out);
+                }
+                out.flush();
+                out.writeLong(checkedOut.getChecksum().getValue());
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                if (temporary != null) {
+                    Files.deleteIfExists(temporary);
+                }
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+}
@@ -0,0 +1,155 @@
+package CodeGenerators;
+
+import Utilities.Token;
+
+import java.util.Arrays;
+
+// Folds the ints and booleans whose values are known within each basic block, wrapping sums at 16 bits
+public class ConstantFolding {
+    private ThreeAddressCode code;
+    // A value is known while its stamp is the one of the current block
+    private int[] symbolValues, symbolStamps;
+    private int[] temporaryValues, temporaryStamps;
+    private boolean[] isFlagsRead;
+    private int stamp, foldedCount;
+
+    public void initialize(ThreeAddressCode code) {
+        this.code = code;
+        symbolValues = new int[code.getSymbols().size()];
+        symbolStamps = new int[code.getSymbols().size()];
+        temporaryValues = new int[ThreeAddressCode.TEMPORARY_COUNT];
+        temporaryStamps = new int[ThreeAddressCode.TEMPORARY_COUNT];
+        stamp = 0;
+        foldedCount = 0;
+    }
+
+    public void fold() {
+        isFlagsRead = code.findFlagsReadByStrings();
+        for (int block = 0; block < code.getBlockCount(); block++) {
+            stamp++;
+            for (int i = code.getBlockStart(block); i < code.getBlockEnd(block); i++) {
+                fold(i);
+            }
+        }
+        removeUnusedTemporaries();
+    }
+
+    // The number of operations computed at compile time in the last run, without the loads that were replaced
+    public int getFoldedCount() {
+        return foldedCount;
+    }
+
+    private void fold(int instruction) {
+        Opcode opcode = code.getOpcode(instruction);
+        Token dataType = code.getType(instruction);
+        int result = code.getResult(instruction);
+        int left = code.getLeft(instruction), right = code.getRight(instruction);
+
+        if (opcode == Opcode.MOVE) {
+            if (!ThreeAddressCode.isConstant(left) && isKnown(left)) {
+                left = code.constant(getValue(left));
+                code.set(instruction, Opcode.MOVE, dataType, result, left, right);
+            }
+            if (ThreeAddressCode.isConstant(left)) {
+                setValue(result, code.getConstant(left));
+            }
+            else {
+                forget(result);
+            }
+        }
+        else if (opcode == Opcode.ADD || opcode == Opcode.SUB) {
+            if (isKnown(left) && isKnown(right) && !isFlagsRead[instruction]) {
+                int value = opcode == Opcode.ADD ? getValue(left) + getValue(right) : getValue(left) - getValue(right);
+                value &= 0xFFFF;
+                code.set(instruction, Opcode.MOVE, dataType, result, code.constant(value), ThreeAddressCode.NONE);
+                setValue(result, value);
+                foldedCount++;
+                return;
+            }
+            if (!ThreeAddressCode.isConstant(right) && isKnown(right)) {
+                code.set(instruction, opcode, dataType, result, left, code.constant(getValue(right)));
+            }
+            forget(result);
+        }
+        else if (opcode == Opcode.SCAN) {
+            forget(result);
+        }
+    }
+
+    // A temporary is dead from where it is loaded again or its block ends, since no temporary lives past a jump
+    private void removeUnusedTemporaries() {
+        boolean[] removed = new boolean[code.size()];
+        boolean[] isLive = new boolean[ThreeAddressCode.TEMPORARY_COUNT];
+        boolean hasRemoved = false;
+        for (int block = 0; block < code.getBlockCount(); block++) {
+            Arrays.fill(isLive, false);
+            for (int i = code.getBlockEnd(block) - 1; i >= code.getBlockStart(block); i--) {
+                Opcode opcode = code.getOpcode(i);
+                int result = code.getResult(i);
+                boolean definesTemporary = (opcode == Opcode.MOVE || opcode == Opcode.ADD || opcode == Opcode.SUB)
+                        && ThreeAddressCode.isTemporary(result);
+                if (definesTemporary) {
+                    int temporary = ThreeAddressCode.getIndex(result);
+                    if (!isLive[temporary] && !isFlagsRead[i]) {
+                        removed[i] = true;
+                        hasRemoved = true;
+                        continue;
+                    }
+                    isLive[temporary] = false;
+                }
+                if (opcode == Opcode.STRING) {
+                    continue;
+                }
+                if (ThreeAddressCode.isTemporary(code.getLeft(i))) {
+                    isLive[ThreeAddressCode.getIndex(code.getLeft(i))] = true;
+                }
+                if (ThreeAddressCode.isTemporary(code.getRight(i))) {
+                    isLive[ThreeAddressCode.getIndex(code.getRight(i))] = true;
+                }
+            }
+        }
+        if (hasRemoved) {
+            code.remove(removed);
+        }
+    }
+
+    private boolean isKnown(int operand) {
+        if (ThreeAddressCode.isConstant(operand)) {
+            return true;
+        }
+        if (ThreeAddressCode.isTemporary(operand)) {
+            return temporaryStamps[ThreeAddressCode.getIndex(operand)] == stamp;
+        }
+        return ThreeAddressCode.isSymbol(operand) && symbolStamps[ThreeAddressCode.getIndex(operand)] == stamp;
+    }
+
+    private int getValue(int operand) {
+        if (ThreeAddressCode.isConstant(operand)) {
+            return code.getConstant(operand);
+        }
+        if (ThreeAddressCode.isTemporary(operand)) {
+            return temporaryValues[ThreeAddressCode.getIndex(operand)];
+        }
+        return symbolValues[ThreeAddressCode.getIndex(operand)];
+    }
+
+    private void setValue(int operand, int value) {
+        if (ThreeAddressCode.isTemporary(operand)) {
+            temporaryValues[ThreeAddressCode.getIndex(operand)] = value;
+            temporaryStamps[ThreeAddressCode.getIndex(operand)] = stamp;
+        }
+        else {
+            symbolValues[ThreeAddressCode.getIndex(operand)] = value;
+            symbolStamps[ThreeAddressCode.getIndex(operand)] = stamp;
+        }
+    }
+
+    private void forget(int operand) {
+        if (ThreeAddressCode.isTemporary(operand)) {
+            temporaryStamps[ThreeAddressCode.getIndex(operand)] = 0;
+        }
+        else {
+            symbolStamps[ThreeAddressCode.getIndex(operand)] = 0;
+        }
+    }
+}
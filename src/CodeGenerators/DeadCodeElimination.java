@@ -0,0 +1,217 @@
+package CodeGenerators;
+
+import Utilities.Token;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Removes decided conditions, unreachable code, jumps to the next instruction, unused labels and dead stores
+public class DeadCodeElimination {
+    private ThreeAddressCode code;
+    private Liveness liveness;
+    private int removedCount;
+
+    public void initialize(ThreeAddressCode code) {
+        this.code = code;
+        liveness = new Liveness();
+        removedCount = 0;
+    }
+
+    public void eliminate() {
+        boolean hasChanged;
+        do {
+            hasChanged = decideConditions();
+            hasChanged |= removeUnreachableCode();
+            hasChanged |= removeDeadStores();
+        } while (hasChanged);
+    }
+
+    // The number of instructions taken out in the last run
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    private boolean decideConditions() {
+        boolean[] removed = new boolean[code.size()];
+        boolean[] isFlagsRead = code.findFlagsReadByStrings();
+        boolean hasChanged = false;
+        int[] constants = new int[ThreeAddressCode.TEMPORARY_COUNT];
+        for (int block = 0; block < code.getBlockCount(); block++) {
+            Arrays.fill(constants, ThreeAddressCode.NONE);
+            for (int i = code.getBlockStart(block); i < code.getBlockEnd(block); i++) {
+                Opcode opcode = code.getOpcode(i);
+                int result = code.getResult(i);
+                if (opcode == Opcode.MOVE || opcode == Opcode.ADD || opcode == Opcode.SUB) {
+                    if (ThreeAddressCode.isTemporary(result)) {
+                        boolean isConstant = opcode == Opcode.MOVE && ThreeAddressCode.isConstant(code.getLeft(i));
+                        constants[ThreeAddressCode.getIndex(result)] = isConstant ? code.getLeft(i) : ThreeAddressCode.NONE;
+                    }
+                    continue;
+                }
+                if (!opcode.isConditionalJump() || code.getType(i) == Token.STRING || isFlagsRead[i]) {
+                    continue;
+                }
+                int left = constants[ThreeAddressCode.getIndex(code.getLeft(i))];
+                int right = constants[ThreeAddressCode.getIndex(code.getRight(i))];
+                if (left == ThreeAddressCode.NONE || right == ThreeAddressCode.NONE) {
+                    continue;
+                }
+                if (isTaken(opcode, code.getType(i), code.getConstant(left), code.getConstant(right))) {
+                    code.set(i, Opcode.JUMP, null, result, ThreeAddressCode.NONE, ThreeAddressCode.NONE);
+                }
+                else {
+                    removed[i] = true;
+                }
+                hasChanged = true;
+            }
+        }
+        remove(removed);
+        return hasChanged;
+    }
+
+    // Compares as the CMP of the generators does, on the 16 bits of an int or the 8 of a boolean
+    private static boolean isTaken(Opcode jump, Token dataType, int left, int right) {
+        int comparison = dataType == Token.INT
+                ? Short.compare((short) left, (short) right)
+                : Byte.compare((byte) left, (byte) right);
+        return switch (jump) {
+            case JUMP_IF_EQUAL -> comparison == 0;
+            case JUMP_IF_DIFFERENT -> comparison != 0;
+            case JUMP_IF_LESS -> comparison < 0;
+            case JUMP_IF_LESS_EQ -> comparison <= 0;
+            case JUMP_IF_GREATER -> comparison > 0;
+            default -> comparison >= 0;
+        };
+    }
+
+    // The two labels of a loop are only taken out together, since the intermediate code indents between them
+    private boolean removeUnreachableCode() {
+        boolean[] removed = new boolean[code.size()];
+        boolean[] isFlagsRead = code.findFlagsReadByStrings();
+        boolean[] isReachable = findReachableBlocks();
+        for (int block = 0; block < code.getBlockCount(); block++) {
+            if (!isReachable[block]) {
+                Arrays.fill(removed, code.getBlockStart(block), code.getBlockEnd(block), true);
+            }
+        }
+        for (int i = 0; i < code.size(); i++) {
+            if (!removed[i] && !isFlagsRead[i] && code.getOpcode(i).isJump() && isNextInstruction(removed, i, code.getResult(i))) {
+                removed[i] = true;
+            }
+        }
+
+        int[] jumpCounts = new int[code.getLabelCount()];
+        int[] whileLabels = new int[code.getLabelCount()];
+        int[] continueLabels = new int[code.getLabelCount()];
+        Arrays.fill(whileLabels, ThreeAddressCode.NONE);
+        Arrays.fill(continueLabels, ThreeAddressCode.NONE);
+        for (int i = 0; i < code.size(); i++) {
+            if (!removed[i] && code.getOpcode(i).isJump()) {
+                jumpCounts[code.getResult(i)]++;
+            }
+        }
+        for (int label = 0; label < code.getLabelCount(); label++) {
+            ThreeAddressCode.LabelKind kind = code.getLabelKind(label);
+            if (kind == ThreeAddressCode.LabelKind.WHILE) {
+                whileLabels[code.getLabelNumber(label)] = label;
+            }
+            else if (kind == ThreeAddressCode.LabelKind.WHILE_CONTINUE) {
+                continueLabels[code.getLabelNumber(label)] = label;
+            }
+        }
+        for (int i = 0; i < code.size(); i++) {
+            if (removed[i] || code.getOpcode(i) != Opcode.LABEL) {
+                continue;
+            }
+            int label = code.getResult(i);
+            ThreeAddressCode.LabelKind kind = code.getLabelKind(label);
+            int pair = label;
+            if (kind == ThreeAddressCode.LabelKind.WHILE) {
+                pair = continueLabels[code.getLabelNumber(label)];
+            }
+            else if (kind == ThreeAddressCode.LabelKind.WHILE_CONTINUE) {
+                pair = whileLabels[code.getLabelNumber(label)];
+            }
+            if (jumpCounts[label] == 0 && jumpCounts[pair] == 0) {
+                removed[i] = true;
+            }
+        }
+        return remove(removed);
+    }
+
+    // Whether only labels, one of them the one given, are left between the instruction and the next one that stays
+    private boolean isNextInstruction(boolean[] removed, int instruction, int label) {
+        for (int i = instruction + 1; i < code.size(); i++) {
+            if (removed[i]) {
+                continue;
+            }
+            if (code.getOpcode(i) != Opcode.LABEL) {
+                return false;
+            }
+            if (code.getResult(i) == label) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean[] findReachableBlocks() {
+        boolean[] isReachable = new boolean[code.getBlockCount()];
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+        if (code.getBlockCount() > 0) {
+            isReachable[0] = true;
+            pending.push(0);
+        }
+        while (!pending.isEmpty()) {
+            int block = pending.pop();
+            int last = code.getBlockEnd(block) - 1;
+            Opcode opcode = code.getOpcode(last);
+            int[] successors = {
+                    opcode == Opcode.JUMP || block + 1 == code.getBlockCount() ? -1 : block + 1,
+                    opcode.isJump() ? code.getLabelBlock(code.getResult(last)) : -1
+            };
+            for (int successor : successors) {
+                if (successor != -1 && !isReachable[successor]) {
+                    isReachable[successor] = true;
+                    pending.push(successor);
+                }
+            }
+        }
+        return isReachable;
+    }
+
+    private boolean removeDeadStores() {
+        liveness.initialize(code);
+        liveness.analyze();
+        boolean[] removed = new boolean[code.size()];
+        boolean[] isFlagsRead = code.findFlagsReadByStrings();
+        for (int block = 0; block < code.getBlockCount(); block++) {
+            BitSet live = liveness.getLiveOut(block);
+            for (int i = code.getBlockEnd(block) - 1; i >= code.getBlockStart(block); i--) {
+                int variable = liveness.getWrittenVariable(i);
+                if (variable != -1 && !live.get(variable) && !isFlagsRead[i]) {
+                    removed[i] = true;
+                    continue;
+                }
+                liveness.update(live, i);
+            }
+        }
+        return remove(removed);
+    }
+
+    private boolean remove(boolean[] removed) {
+        int count = 0;
+        for (boolean isRemoved : removed) {
+            if (isRemoved) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+        code.remove(removed);
+        removedCount += count;
+        return true;
+    }
+}
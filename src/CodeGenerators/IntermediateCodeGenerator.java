@@ -1,46 +1,64 @@
 package CodeGenerators;
 
-import SyntacticAnalysis.AbstractSyntaxTree;
-import SyntacticAnalysis.Node;
-import Utilities.SymbolData;
+import SyntacticAnalysis.SymbolTable;
+import Utilities.Symbols;
 import Utilities.Token;
-import Utilities.TokenTuple;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 
 public class IntermediateCodeGenerator {
-    private AbstractSyntaxTree syntaxTree;
-    private HashMap<String, SymbolData> symbolDataMap;
+    private ThreeAddressCode threeAddressCode;
+    private Symbols symbols;
     private StringBuilder header, data, code, macrosAndProcesses;
-    private HashMap<Token, String> inverseJumpsMap;
-    private int ifCount, whileCount, level;
+    private int level;
+    // The ifs whose body is indented, by the label where it ends, and the whiles, by their number
+    private boolean[] openIfs, openWhiles;
+    // The instructions that wait for the peephole until the next label, jump or print
+    private final Peephole peephole;
+    private ArrayList<Peephole.Instruction> pendingInstructions;
+    private boolean optimizing;
 
-    public void initialize(AbstractSyntaxTree syntaxTree, HashMap<String, SymbolData> symbolDataMap) {
-        this.syntaxTree = syntaxTree;
-        this.symbolDataMap = symbolDataMap;
+    public IntermediateCodeGenerator() {
+        peephole = new Peephole();
+    }
+
+    public void initialize(ThreeAddressCode threeAddressCode) {
+        this.threeAddressCode = threeAddressCode;
+        symbols = threeAddressCode.getSymbols();
         header = new StringBuilder();
         data = new StringBuilder();
         macrosAndProcesses = new StringBuilder();
         code = new StringBuilder();
-        inverseJumpsMap = new HashMap<>();
+        pendingInstructions = new ArrayList<>();
+        peephole.initialize(threeAddressCode);
 
-        ifCount = 0;
-        whileCount = 0;
         level = 1;
+        openIfs = new boolean[threeAddressCode.getLabelCount()];
+        openWhiles = new boolean[threeAddressCode.getLabelCount()];
+    }
+
+    public void setOptimizing(boolean optimizing) {
+        this.optimizing = optimizing;
+    }
 
-        inverseJumpsMap.put(Token.EQUALS, "JNE");
-        inverseJumpsMap.put(Token.DIFFERENT, "JE");
-        inverseJumpsMap.put(Token.LESS, "JGE");
-        inverseJumpsMap.put(Token.LESS_EQ, "JG");
-        inverseJumpsMap.put(Token.GREATER, "JLE");
-        inverseJumpsMap.put(Token.GREATER_EQ, "JL");
+    public boolean isOptimizing() {
+        return optimizing;
+    }
+
+    public Peephole getPeephole() {
+        return peephole;
     }
 
     public String getIntermediateCode() {
+        addHeader(threeAddressCode.getProgramName());
         addIntToString();
         addPrint();
-        generate(syntaxTree.getRoot());
+        addVariables();
+        for (int i = 0; i < threeAddressCode.size(); i++) {
+            generate(i);
+        }
+        addPendingInstructions();
         StringBuilder intermediateCode = new StringBuilder();
         intermediateCode.append(header.toString());
         intermediateCode.append(".DATA").append("\n");
@@ -57,36 +75,40 @@ public class IntermediateCodeGenerator {
         return intermediateCode.toString();
     }
 
-    private void generate(Node node) {
-        int openIf = -1, openWhile = -1;
+    // The body of a while is indented one level more than its label and the body of an if one more than its jump
+    private void generate(int instruction) {
+        Opcode opcode = threeAddressCode.getOpcode(instruction);
+        Token dataType = threeAddressCode.getType(instruction);
+        int result = threeAddressCode.getResult(instruction);
+        int left = threeAddressCode.getLeft(instruction), right = threeAddressCode.getRight(instruction);
 
-        if (node instanceof Node.Code codeNode) {
-            addHeader(codeNode.getId());
-        }
-        else if (node instanceof Node.Declaration declarationNode) {
-            String fullId = declarationNode.getFullId();
-            Token dataType = declarationNode.getDataType();
-            data.append(fullId)
-                    .append("\t").append(getSize(dataType))
-                    .append("\t").append(getDefaultValue(dataType))
-                    .append("\n");
-        }
-        else if (node instanceof Node.Assignment assignmentNode) {
-            String fullId = assignmentNode.getFullId();
-            Token dataType = symbolDataMap.get(fullId).dataType();
-            if (dataType == Token.INT) {
-                assignInt(assignmentNode, fullId);
+        if (opcode != Opcode.MOVE && opcode != Opcode.ADD && opcode != Opcode.SUB) {
+            if (opcode.isConditionalJump() && dataType != Token.STRING) {
+                addPendingInstruction("CMP", dataType, left, right);
             }
-            if (dataType == Token.BOOLEAN) {
-                assignBoolean(assignmentNode, fullId);
+            addPendingInstructions();
+        }
+
+        if (opcode == Opcode.MOVE) {
+            if (ThreeAddressCode.isSymbol(result) && ThreeAddressCode.isSymbol(left)) {
+                // Memory is copied through the first scratch register
+                addPendingInstruction("MOV", dataType, ThreeAddressCode.temporary(0), left);
+                addPendingInstruction("MOV", dataType, result, ThreeAddressCode.temporary(0));
+                return;
             }
-            if (dataType == Token.STRING) {
-                assignString(assignmentNode, fullId);
+            addPendingInstruction("MOV", dataType, result, left);
+        }
+        else if (opcode == Opcode.ADD || opcode == Opcode.SUB) {
+            if (left != result) {
+                addPendingInstruction("MOV", dataType, result, left);
             }
+            addPendingInstruction(opcode.name(), dataType, result, right);
         }
-        else if (node instanceof Node.Print printNode) {
-            Token dataType = symbolDataMap.get(printNode.getFullId()).dataType();
-            String var = printNode.getFullId();
+        else if (opcode == Opcode.STRING) {
+            assignString(threeAddressCode.getString(instruction), symbols.getFullId(ThreeAddressCode.getIndex(result)));
+        }
+        else if (opcode == Opcode.PRINT) {
+            String var = symbols.getFullId(ThreeAddressCode.getIndex(left));
             addIndentation();
             if (dataType == Token.INT) {
                 code.append("print_int ").append(var).append("\n");
@@ -100,30 +122,31 @@ public class IntermediateCodeGenerator {
             addIndentation();
             code.append("print endl").append("\n");
         }
-        else if (node instanceof Node.If ifNode) {
-            addFlowControl(ifNode.getExpression(), Token.IF);
-            openIf = ifCount++;
-        }
-        else if (node instanceof Node.While whileNode) {
-            addFlowControl(whileNode.getExpression(), Token.WHILE);
-            openWhile = whileCount++;
-        }
-        if (node.isBlockNode()) {
-            for (Node child : node.getChildren()) {
-                generate(child);
-            }
-        }
-        if (openIf != -1) {
+        else if (opcode == Opcode.LABEL) {
             addIndentation();
-            code.append("if_continue").append(openIf).append(":").append("\n");
-            level--;
+            code.append(threeAddressCode.getLabelName(result)).append(":").append("\n");
+            ThreeAddressCode.LabelKind kind = threeAddressCode.getLabelKind(result);
+            int number = threeAddressCode.getLabelNumber(result);
+            if (kind == ThreeAddressCode.LabelKind.WHILE) {
+                openWhiles[number] = true;
+                level++;
+            }
+            else if (kind == ThreeAddressCode.LabelKind.WHILE_CONTINUE && openWhiles[number]) {
+                openWhiles[number] = false;
+                level--;
+            }
+            else if (kind == ThreeAddressCode.LabelKind.IF_CONTINUE && openIfs[result]) {
+                openIfs[result] = false;
+                level--;
+            }
         }
-        if (openWhile != -1) {
-            addIndentation();
-            code.append("JMP while").append(openWhile).append("\n");
+        else if (opcode.isJump()) {
             addIndentation();
-            code.append("while_continue").append(openWhile).append(":").append("\n");
-            level--;
+            code.append(opcode.getMnemonic()).append(" ").append(threeAddressCode.getLabelName(result)).append("\n");
+            if (threeAddressCode.getLabelKind(result) == ThreeAddressCode.LabelKind.IF_CONTINUE && !openIfs[result]) {
+                openIfs[result] = true;
+                level++;
+            }
         }
     }
 
@@ -178,6 +201,18 @@ public class IntermediateCodeGenerator {
         macrosAndProcesses.append("print_boolean_util PROC").append("\n");
         macrosAndProcesses.append("\t").append("MOV AL, bool").append("\n");
         macrosAndProcesses.append("\t").append("CMP AL, 1").append("\n");
+        if (optimizing) {
+            // Falls into the true case, and only that one jumps over the other
+            macrosAndProcesses.append("\t").append("JNE is_false").append("\n");
+            macrosAndProcesses.append("\t\t").append("print true").append("\n");
+            macrosAndProcesses.append("\t\t").append("JMP continue").append("\n");
+            macrosAndProcesses.append("\t").append("is_false:").append("\n");
+            macrosAndProcesses.append("\t\t").append("print false").append("\n");
+            macrosAndProcesses.append("\t").append("continue:").append("\n");
+            macrosAndProcesses.append("\t").append("RET").append("\n");
+            macrosAndProcesses.append("print_boolean_util ENDP").append("\n");
+            return;
+        }
         macrosAndProcesses.append("\t").append("JE is_true").append("\n");
         macrosAndProcesses.append("\t").append("JNE is_false").append("\n");
         macrosAndProcesses.append("\t").append("is_true:").append("\n");
@@ -191,41 +226,49 @@ public class IntermediateCodeGenerator {
         macrosAndProcesses.append("print_boolean_util ENDP").append("\n");
     }
 
-    private void assignInt(Node.Assignment assignmentNode, String var) {
-        String idOrVar = assignmentNode.getExpression().getFirst().getFullId();
-        addIndentation();
-        code.append("MOV AX, ").append(idOrVar).append("\n");
-        for (int i = 1; i < assignmentNode.getExpression().size(); i += 2) {
-            addIndentation();
-            if (assignmentNode.getExpression().get(i).getToken() == Token.PLUS) {
-                code.append("ADD AX, ");
+    // Only the variables that are not shared take bytes and the others are that memory seen with their own type.
+    // The bytes before the variables are as many here as in the object code but for two, so ints are aligned alike
+    private void addVariables() {
+        long[] order = new long[symbols.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = (long) symbols.getOffset(i) << 32 | i;
+        }
+        Arrays.sort(order);
+        int location = SymbolTable.FIRST_OFFSET, storage = -1;
+        for (long entry : order) {
+            if (!symbols.isShared((int) entry)) {
+                storage = (int) entry;
+                break;
             }
-            else if (assignmentNode.getExpression().get(i).getToken() == Token.MINUS) {
-                code.append("SUB AX, ");
+        }
+        for (long entry : order) {
+            int symbol = (int) entry;
+            int offset = symbols.getOffset(symbol);
+            Token dataType = symbols.getDataType(symbol);
+            if (symbols.isShared(symbol)) {
+                int displacement = offset - symbols.getOffset(storage);
+                data.append(symbols.getFullId(symbol))
+                        .append("\tEQU\t<").append(dataType == Token.INT ? "WORD" : "BYTE").append(" PTR ")
+                        .append(symbols.getFullId(storage)).append(displacement != 0 ? String.format("%+d", displacement) : "").append(">")
+                        .append("\n");
+                continue;
             }
-            String value = assignmentNode.getExpression().get(i + 1).getFullId();
-            code.append(value).append("\n");
+            if (offset > location) {
+                data.append("\tDB\t").append(offset - location).append(" DUP(?)").append("\n");
+            }
+            data.append(symbols.getFullId(symbol))
+                    .append("\t").append(getSize(dataType))
+                    .append("\t").append(getDefaultValue(symbol))
+                    .append("\n");
+            storage = symbol;
+            location = offset + symbols.getSize(symbol);
         }
-        addIndentation();
-        code.append("MOV ").append(var).append(", AX").append("\n");
-    }
-
-    private void assignBoolean(Node.Assignment assignmentNode, String var) {
-        Token firstToken = assignmentNode.getExpression().getFirst().getToken();
-        if (firstToken == Token.IDENTIFIER) {
-            String value = assignmentNode.getExpression().getFirst().getFullId();
-            addIndentation();
-            code.append("MOV AL, ").append(value).append("\n");
-            addIndentation();
-            code.append("MOV ").append(var).append(", AL").append("\n");
-            return;
+        if (symbols.getDataSize() > location) {
+            data.append("\tDB\t").append(symbols.getDataSize() - location).append(" DUP(?)").append("\n");
         }
-        addIndentation();
-        code.append("MOV ").append(var).append(", ").append(getBooleanValue(firstToken)).append("\n");
     }
 
-    private void assignString(Node.Assignment assignmentNode, String var) {
-        String value = assignmentNode.getExpression().getFirst().getId();
+    private void assignString(String value, String var) {
         for (int i = 0; i < value.length(); i++) {
             addIndentation();
             code.append("MOV ").append(var).append("[").append(i).append("], '").append(value.charAt(i)).append("'").append("\n");
@@ -234,111 +277,58 @@ public class IntermediateCodeGenerator {
         code.append("MOV ").append(var).append("[").append(value.length()).append("], '").append("$").append("'").append("\n");
     }
 
-    private void addFlowControl(ArrayList<TokenTuple> expression, Token flowControlType) {
-        Token firstToken = expression.getFirst().getToken(), dataType = null;
-        if (firstToken == Token.IDENTIFIER) {
-            dataType = symbolDataMap.get(expression.getFirst().getFullId()).dataType();
-        }
-        else if (firstToken == Token.NUMBER) {
-            dataType = Token.INT;
-        }
-        else if (firstToken == Token.TRUE || firstToken == Token.FALSE) {
-            dataType = Token.BOOLEAN;
-        }
-        else if (firstToken == Token.STRING_VALUE) {
-            dataType = Token.STRING;
-        }
-
-        if (flowControlType == Token.WHILE) {
-            addIndentation();
-            code.append("while").append(whileCount).append(":").append("\n");
-            level++;
-        }
+    private void addPendingInstruction(String operation, Token dataType, int destination, int source) {
+        pendingInstructions.add(new Peephole.Instruction(operation, dataType, destination, source));
+    }
 
-        int operatorPosition = 0;
-        for (int i = 0; i < expression.size(); i++) {
-            if (inverseJumpsMap.containsKey(expression.get(i).getToken())) {
-                operatorPosition = i;
-                break;
-            }
+    private void addPendingInstructions() {
+        if (optimizing) {
+            peephole.optimize(pendingInstructions);
         }
-
-        if (dataType == Token.INT) {
-            addIndentation();
-            String idOrVar = expression.getFirst().getFullId();
-            code.append("MOV AX, ").append(idOrVar).append("\n");
-            for (int i = 1; i < operatorPosition - 1; i += 2) {
+        for (Peephole.Instruction instruction : pendingInstructions) {
+            Token dataType = instruction.dataType();
+            if (instruction.source() == ThreeAddressCode.NONE) {
                 addIndentation();
-                if (expression.get(i).getToken() == Token.PLUS) {
-                    code.append("ADD AX, ");
-                }
-                else if (expression.get(i).getToken() == Token.MINUS) {
-                    code.append("SUB AX, ");
-                }
-                String value = expression.get(i + 1).getFullId();
-                code.append(value).append("\n");
+                code.append(instruction.operation()).append(" ").append(getOperand(instruction.destination(), dataType)).append("\n");
+                continue;
             }
-            addIndentation();
-            code.append("MOV BX, ").append(expression.get(operatorPosition + 1).getId()).append("\n");
-            for (int i = operatorPosition + 2; i < expression.size(); i += 2) {
-                addIndentation();
-                if (expression.get(i).getToken() == Token.PLUS) {
-                    code.append("ADD BX, ");
-                }
-                else if (expression.get(i).getToken() == Token.MINUS) {
-                    code.append("SUB BX, ");
-                }
-                String value = expression.get(i + 1).getFullId();
-                code.append(value).append("\n");
-            }
-            addIndentation();
-            code.append("CMP AX, BX").append("\n");
-        }
-        else if (dataType == Token.BOOLEAN) {
-            String leftValue;
-            if (expression.getFirst().getToken() != Token.IDENTIFIER) {
-                leftValue = getBooleanValue(expression.getFirst().getToken());
-            }
-            else {
-                leftValue = expression.getFirst().getFullId();
-            }
-            addIndentation();
-            code.append("MOV AL, ").append(leftValue).append("\n");
-            String rightValue;
-            if (expression.getFirst().getToken() != Token.IDENTIFIER) {
-                rightValue = getBooleanValue(expression.getLast().getToken());
-            }
-            else {
-                rightValue = expression.getLast().getFullId();
-            }
-            addIndentation();
-            code.append("MOV BL, ").append(rightValue).append("\n");
-            addIndentation();
-            code.append("CMP AL, BL").append("\n");
+            addInstruction(instruction.operation(), getOperand(instruction.destination(), dataType), getOperand(instruction.source(), dataType));
         }
+        pendingInstructions.clear();
+    }
 
+    private void addInstruction(String instruction, String destination, String source) {
         addIndentation();
-        if (flowControlType == Token.IF) {
-            code.append(inverseJumpsMap.get(expression.get(operatorPosition).getToken())).append(" if_continue").append(ifCount).append("\n");
+        code.append(instruction).append(" ").append(destination).append(", ").append(source).append("\n");
+    }
+
+    private String getOperand(int operand, Token dataType) {
+        if (ThreeAddressCode.isSymbol(operand)) {
+            return symbols.getFullId(ThreeAddressCode.getIndex(operand));
         }
-        else if (flowControlType == Token.WHILE) {
-            code.append(inverseJumpsMap.get(expression.get(operatorPosition).getToken())).append(" while_continue").append(whileCount).append("\n");
+        if (ThreeAddressCode.isTemporary(operand) || ThreeAddressCode.isRegister(operand)) {
+            return getRegister(operand, dataType);
         }
+        return Integer.toString(threeAddressCode.getConstant(operand));
     }
 
-    private void addIndentation() {
-        code.append("\t".repeat(level));
+    private String getRegister(int temporary, Token dataType) {
+        if (ThreeAddressCode.isRegister(temporary)) {
+            return RegisterAllocation.REGISTERS[ThreeAddressCode.getIndex(temporary)];
+        }
+        String register = ThreeAddressCode.getIndex(temporary) == 0 ? "A" : "B";
+        return register + (dataType == Token.BOOLEAN ? "L" : "X");
     }
 
-    private String getBooleanValue(Token token) {
-        return token == Token.TRUE ? "1" : "0";
+    private void addIndentation() {
+        code.append("\t".repeat(level));
     }
 
-    private String getDefaultValue(Token dataType) {
-        if (dataType == Token.INT || dataType == Token.BOOLEAN) {
+    private String getDefaultValue(int var) {
+        if (symbols.getDataType(var) != Token.STRING) {
             return "?";
         }
-        return "100 DUP('$')";
+        return symbols.getSize(var) + " DUP('$')";
     }
 
     private String getSize(Token dataType) {
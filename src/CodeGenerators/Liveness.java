@@ -0,0 +1,97 @@
+package CodeGenerators;
+
+import java.util.BitSet;
+
+// The variables live where every basic block starts, numbered symbols first and temporaries after them
+public class Liveness {
+    private ThreeAddressCode code;
+    private int symbolCount;
+    private BitSet[] liveIn;
+
+    public void initialize(ThreeAddressCode code) {
+        this.code = code;
+        symbolCount = code.getSymbols().size();
+        liveIn = new BitSet[code.getBlockCount()];
+        for (int block = 0; block < liveIn.length; block++) {
+            liveIn[block] = new BitSet(symbolCount + ThreeAddressCode.TEMPORARY_COUNT);
+        }
+    }
+
+    public void analyze() {
+        boolean hasChanged;
+        do {
+            hasChanged = false;
+            for (int block = liveIn.length - 1; block >= 0; block--) {
+                BitSet live = getLiveOut(block);
+                for (int i = code.getBlockEnd(block) - 1; i >= code.getBlockStart(block); i--) {
+                    update(live, i);
+                }
+                if (!live.equals(liveIn[block])) {
+                    liveIn[block] = live;
+                    hasChanged = true;
+                }
+            }
+        } while (hasChanged);
+    }
+
+    public BitSet getLiveIn(int block) {
+        return liveIn[block];
+    }
+
+    // What is live where the block ends, in a new set the caller may change
+    public BitSet getLiveOut(int block) {
+        BitSet live = new BitSet();
+        int last = code.getBlockEnd(block) - 1;
+        Opcode opcode = code.getOpcode(last);
+        if (opcode != Opcode.JUMP && block + 1 < liveIn.length) {
+            live.or(liveIn[block + 1]);
+        }
+        if (opcode.isJump()) {
+            live.or(liveIn[code.getLabelBlock(code.getResult(last))]);
+        }
+        return live;
+    }
+
+    public void update(BitSet live, int instruction) {
+        int written = getWrittenVariable(instruction);
+        if (written != -1) {
+            live.clear(written);
+        }
+        Opcode opcode = code.getOpcode(instruction);
+        // A scan leaves the variable as it was when nothing is read
+        if (opcode == Opcode.SCAN) {
+            live.set(getVariable(code.getResult(instruction)));
+            return;
+        }
+        if (opcode == Opcode.STRING || opcode == Opcode.LABEL || opcode == Opcode.JUMP) {
+            return;
+        }
+        int left = getVariable(code.getLeft(instruction));
+        int right = getVariable(code.getRight(instruction));
+        if (left != -1) {
+            live.set(left);
+        }
+        if (right != -1) {
+            live.set(right);
+        }
+    }
+
+    public int getWrittenVariable(int instruction) {
+        Opcode opcode = code.getOpcode(instruction);
+        if (opcode == Opcode.MOVE || opcode == Opcode.ADD || opcode == Opcode.SUB || opcode == Opcode.STRING) {
+            return getVariable(code.getResult(instruction));
+        }
+        return -1;
+    }
+
+    // The number of the variable an operand is, or -1 for the constants
+    public int getVariable(int operand) {
+        if (ThreeAddressCode.isSymbol(operand)) {
+            return ThreeAddressCode.getIndex(operand);
+        }
+        if (ThreeAddressCode.isTemporary(operand)) {
+            return symbolCount + ThreeAddressCode.getIndex(operand);
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,224 @@
+package CodeGenerators;
+
+import SyntacticAnalysis.AbstractSyntaxTree;
+import SyntacticAnalysis.Expression;
+import SyntacticAnalysis.NodeKind;
+import Utilities.Symbols;
+import Utilities.Token;
+import Utilities.TokenClass;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// Turns the analyzed syntax tree into the three-address code both generators emit from
+public class Lowering {
+    private static final int INITIAL_CAPACITY = 16;
+    private AbstractSyntaxTree syntaxTree;
+    private Symbols symbols;
+    private ThreeAddressCode code;
+    private HashMap<Token, Opcode> inverseJumpsMap;
+    private int ifCount, whileCount;
+
+    public void initialize(AbstractSyntaxTree syntaxTree, Symbols symbols) {
+        this.syntaxTree = syntaxTree;
+        this.symbols = symbols;
+        inverseJumpsMap = new HashMap<>();
+
+        ifCount = 0;
+        whileCount = 0;
+
+        inverseJumpsMap.put(Token.EQUALS, Opcode.JUMP_IF_DIFFERENT);
+        inverseJumpsMap.put(Token.DIFFERENT, Opcode.JUMP_IF_EQUAL);
+        inverseJumpsMap.put(Token.LESS, Opcode.JUMP_IF_GREATER_EQ);
+        inverseJumpsMap.put(Token.LESS_EQ, Opcode.JUMP_IF_GREATER);
+        inverseJumpsMap.put(Token.GREATER, Opcode.JUMP_IF_LESS_EQ);
+        inverseJumpsMap.put(Token.GREATER_EQ, Opcode.JUMP_IF_LESS);
+    }
+
+    // Nodes come in document order, so the blocks that ended before a node are closed when reaching it
+    public ThreeAddressCode lower() {
+        String programName = syntaxTree.getIdentifiers().getName(syntaxTree.getIdentifier(syntaxTree.getRoot()));
+        code = new ThreeAddressCode(symbols, programName);
+        int[] blocks = new int[INITIAL_CAPACITY], beginLabels = new int[INITIAL_CAPACITY], endLabels = new int[INITIAL_CAPACITY];
+        int blockCount = 0;
+        AbstractSyntaxTree.Cursor cursor = syntaxTree.getCursor();
+        do {
+            while (blockCount > 0 && blocks[blockCount - 1] != cursor.getParent()) {
+                blockCount--;
+                closeBlock(beginLabels[blockCount], endLabels[blockCount]);
+            }
+            int endLabel = -1, beginLabel = -1;
+            NodeKind kind = cursor.getKind();
+            if (kind == NodeKind.DECLARATION) {
+                int symbol = cursor.getSymbol();
+                if (symbols.isShared(symbol)) {
+                    // Another block may have left its values in these bytes, so they are set where the variable is declared
+                    addDefaultValue(symbol);
+                }
+            }
+            else if (kind == NodeKind.ASSIGNMENT) {
+                int symbol = cursor.getSymbol();
+                Token dataType = symbols.getDataType(symbol);
+                if (dataType == Token.INT) {
+                    loadInt(cursor.getExpression(), 0);
+                    code.add(Opcode.MOVE, Token.INT, ThreeAddressCode.symbol(symbol), ThreeAddressCode.temporary(0), ThreeAddressCode.NONE);
+                }
+                if (dataType == Token.BOOLEAN) {
+                    assignBoolean(cursor.getExpression(), symbol);
+                }
+                if (dataType == Token.STRING) {
+                    code.add(Opcode.STRING, Token.STRING, ThreeAddressCode.symbol(symbol), code.addString(getStringValue(cursor.getExpression())), ThreeAddressCode.NONE);
+                }
+            }
+            else if (kind == NodeKind.PRINT) {
+                int symbol = cursor.getSymbol();
+                code.add(Opcode.PRINT, symbols.getDataType(symbol), ThreeAddressCode.NONE, ThreeAddressCode.symbol(symbol), ThreeAddressCode.NONE);
+            }
+            else if (kind == NodeKind.SCAN) {
+                int symbol = cursor.getSymbol();
+                code.add(Opcode.SCAN, symbols.getDataType(symbol), ThreeAddressCode.symbol(symbol), ThreeAddressCode.NONE, ThreeAddressCode.NONE);
+            }
+            else if (kind == NodeKind.IF) {
+                endLabel = code.newLabel(ThreeAddressCode.LabelKind.IF_CONTINUE, ifCount++);
+                addCondition((Expression.Binary) cursor.getExpression(), endLabel);
+            }
+            else if (kind == NodeKind.WHILE) {
+                beginLabel = code.newLabel(ThreeAddressCode.LabelKind.WHILE, whileCount);
+                endLabel = code.newLabel(ThreeAddressCode.LabelKind.WHILE_CONTINUE, whileCount++);
+                code.add(Opcode.LABEL, null, beginLabel, ThreeAddressCode.NONE, ThreeAddressCode.NONE);
+                addCondition((Expression.Binary) cursor.getExpression(), endLabel);
+            }
+            if (syntaxTree.getFirstChild(cursor.getNode()) == -1) {
+                closeBlock(beginLabel, endLabel);
+                continue;
+            }
+            if (blockCount == blocks.length) {
+                blocks = Arrays.copyOf(blocks, blockCount * 2);
+                beginLabels = Arrays.copyOf(beginLabels, blockCount * 2);
+                endLabels = Arrays.copyOf(endLabels, blockCount * 2);
+            }
+            blocks[blockCount] = cursor.getNode();
+            beginLabels[blockCount] = beginLabel;
+            endLabels[blockCount++] = endLabel;
+        } while (cursor.next());
+        while (blockCount > 0) {
+            blockCount--;
+            closeBlock(beginLabels[blockCount], endLabels[blockCount]);
+        }
+        code.findBasicBlocks();
+        return code;
+    }
+
+    private void closeBlock(int beginLabel, int endLabel) {
+        if (beginLabel != -1) {
+            code.add(Opcode.JUMP, null, beginLabel, ThreeAddressCode.NONE, ThreeAddressCode.NONE);
+        }
+        if (endLabel != -1) {
+            code.add(Opcode.LABEL, null, endLabel, ThreeAddressCode.NONE, ThreeAddressCode.NONE);
+        }
+    }
+
+    // Strings are emptied by writing their '$' first
+    private void addDefaultValue(int symbol) {
+        Token dataType = symbols.getDataType(symbol);
+        if (dataType == Token.STRING) {
+            code.add(Opcode.STRING, Token.STRING, ThreeAddressCode.symbol(symbol), code.addString(""), ThreeAddressCode.NONE);
+        }
+        else {
+            code.add(Opcode.MOVE, dataType, ThreeAddressCode.symbol(symbol), code.constant(0), ThreeAddressCode.NONE);
+        }
+    }
+
+    private void assignBoolean(Expression expression, int symbol) {
+        if (expression instanceof Expression.Variable) {
+            code.add(Opcode.MOVE, Token.BOOLEAN, ThreeAddressCode.temporary(0), getOperand(expression), ThreeAddressCode.NONE);
+            code.add(Opcode.MOVE, Token.BOOLEAN, ThreeAddressCode.symbol(symbol), ThreeAddressCode.temporary(0), ThreeAddressCode.NONE);
+            return;
+        }
+        code.add(Opcode.MOVE, Token.BOOLEAN, ThreeAddressCode.symbol(symbol), getOperand(expression), ThreeAddressCode.NONE);
+    }
+
+    // Strings are not compared, so their conditions jump on the flags left before, which the passes keep.
+    // Two literals are compared here instead, by their text
+    private void addCondition(Expression.Binary condition, int falseLabel) {
+        Token dataType = getDataType(condition.getLeft());
+        Opcode jump = inverseJumpsMap.get(condition.getOperator());
+        if (dataType == Token.INT) {
+            loadInt(condition.getLeft(), 0);
+            loadInt(condition.getRight(), 1);
+        }
+        else if (dataType == Token.BOOLEAN) {
+            code.add(Opcode.MOVE, Token.BOOLEAN, ThreeAddressCode.temporary(0), getOperand(condition.getLeft()), ThreeAddressCode.NONE);
+            code.add(Opcode.MOVE, Token.BOOLEAN, ThreeAddressCode.temporary(1), getOperand(condition.getRight()), ThreeAddressCode.NONE);
+        }
+        if (dataType == Token.STRING) {
+            if (condition.getLeft() instanceof Expression.Literal left && condition.getRight() instanceof Expression.Literal right) {
+                if (!isTrue(condition.getOperator(), left.getValue().compareTo(right.getValue()))) {
+                    code.add(Opcode.JUMP, null, falseLabel, ThreeAddressCode.NONE, ThreeAddressCode.NONE);
+                }
+                return;
+            }
+            code.add(jump, Token.STRING, falseLabel, ThreeAddressCode.NONE, ThreeAddressCode.NONE);
+            return;
+        }
+        code.add(jump, dataType, falseLabel, ThreeAddressCode.temporary(0), ThreeAddressCode.temporary(1));
+    }
+
+    private static boolean isTrue(Token operator, int comparison) {
+        return switch (operator) {
+            case EQUALS -> comparison == 0;
+            case DIFFERENT -> comparison != 0;
+            case LESS -> comparison < 0;
+            case LESS_EQ -> comparison <= 0;
+            case GREATER -> comparison > 0;
+            default -> comparison >= 0;
+        };
+    }
+
+    private void loadInt(Expression expression, int temporary) {
+        ArrayList<Expression.Binary> operations = new ArrayList<>();
+        while (expression instanceof Expression.Binary binary) {
+            operations.add(binary);
+            expression = binary.getLeft();
+        }
+        int register = ThreeAddressCode.temporary(temporary);
+        code.add(Opcode.MOVE, Token.INT, register, getOperand(expression), ThreeAddressCode.NONE);
+        for (int i = operations.size() - 1; i >= 0; i--) {
+            Expression.Binary binary = operations.get(i);
+            Opcode opcode = binary.getOperator() == Token.PLUS ? Opcode.ADD : Opcode.SUB;
+            code.add(opcode, Token.INT, register, register, getOperand(binary.getRight()));
+        }
+    }
+
+    private int getOperand(Expression expression) {
+        if (expression instanceof Expression.Variable variable) {
+            return ThreeAddressCode.symbol(variable.getSymbol());
+        }
+        return code.constant(((Expression.Literal) expression).getConstant());
+    }
+
+    private String getStringValue(Expression expression) {
+        if (expression instanceof Expression.Variable variable) {
+            return syntaxTree.getIdentifiers().getName(variable.getIdentifier());
+        }
+        return ((Expression.Literal) expression).getValue();
+    }
+
+    private Token getDataType(Expression expression) {
+        while (expression instanceof Expression.Binary binary) {
+            expression = binary.getLeft();
+        }
+        if (expression instanceof Expression.Variable variable) {
+            return symbols.getDataType(variable.getSymbol());
+        }
+        Token token = ((Expression.Literal) expression).getToken();
+        if (token == Token.NUMBER) {
+            return Token.INT;
+        }
+        if (token.is(TokenClass.BOOLEAN_LITERAL)) {
+            return Token.BOOLEAN;
+        }
+        return Token.STRING;
+    }
+}
@@ -1,50 +1,53 @@
 package CodeGenerators;
 
-import SyntacticAnalysis.AbstractSyntaxTree;
-import SyntacticAnalysis.Node;
-import Utilities.SymbolData;
+import Utilities.Symbols;
 import Utilities.Token;
-import Utilities.TokenTuple;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
 public class ObjectCodeGenerator {
-    private AbstractSyntaxTree syntaxTree;
-    private HashMap<String, SymbolData> symbolDataMap;
+    private ThreeAddressCode threeAddressCode;
+    private Symbols symbols;
     private StringBuilder data, code;
-    private HashMap<Token, String> inverseJumpsMap;
-    private int ifCount, whileCount, codeSegmentOffset, codeOffset, lastLength;
+    private int codeSegmentOffset, codeOffset, lastLength, instructionCount;
     private String dataSegment, codeSegment;
 
     private HashMap<String, HashMap<String, String>> binariesMap;
     private HashMap<String, String> directBinariesMap;
-    private HashMap<String, Integer> flowControlOffsetMap, flowControlContinuesPositionsMap;
+    // The offset of every label once it is placed, and the jumps to labels that were not placed yet
+    private int[] labelOffsets;
+    private ArrayList<int[]> pendingJumps;
+    // The instructions that wait for the peephole until the next label, jump or print
+    private final Peephole peephole;
+    private ArrayList<Peephole.Instruction> pendingInstructions;
+    private boolean optimizing;
+    private int savedBytes;
+
+    public ObjectCodeGenerator() {
+        peephole = new Peephole();
+    }
 
-    public void initialize(AbstractSyntaxTree syntaxTree, HashMap<String, SymbolData> symbolDataMap) {
-        this.syntaxTree = syntaxTree;
-        this.symbolDataMap = symbolDataMap;
+    public void initialize(ThreeAddressCode threeAddressCode) {
+        this.threeAddressCode = threeAddressCode;
+        symbols = threeAddressCode.getSymbols();
         data = new StringBuilder();
         code = new StringBuilder();
-        inverseJumpsMap = new HashMap<>();
-        flowControlOffsetMap = new HashMap<>();
-        flowControlContinuesPositionsMap = new HashMap<>();
+        labelOffsets = new int[threeAddressCode.getLabelCount()];
+        Arrays.fill(labelOffsets, -1);
+        pendingJumps = new ArrayList<>();
+        pendingInstructions = new ArrayList<>();
+        peephole.initialize(threeAddressCode);
 
-        ifCount = 0;
-        whileCount = 0;
         codeOffset = 0;
+        instructionCount = 0;
+        savedBytes = 0;
         codeSegmentOffset = 160;
 
         dataSegment = "0000";
         codeSegment = "00A0";
 
-        inverseJumpsMap.put(Token.EQUALS, "JNE");
-        inverseJumpsMap.put(Token.DIFFERENT, "JE");
-        inverseJumpsMap.put(Token.LESS, "JGE");
-        inverseJumpsMap.put(Token.LESS_EQ, "JG");
-        inverseJumpsMap.put(Token.GREATER, "JLE");
-        inverseJumpsMap.put(Token.GREATER_EQ, "JL");
-
         binariesMap = new HashMap<>();
 
         binariesMap.put("MOV", new HashMap<>());
@@ -69,12 +72,14 @@ public class ObjectCodeGenerator {
         binariesMap.get("ADD").put("IMM_AX", "0000 0101");
         binariesMap.get("ADD").put("IMM_AH", "1000 0000 1100 0100");
         binariesMap.get("ADD").put("IMM_BX", "1000 0001 1100 0011");
+        binariesMap.get("ADD").put("IMM8_BX", "1000 0011 1100 0011");
         binariesMap.get("ADD").put("M_AX", "0000 0011 0000 0101");
         binariesMap.get("ADD").put("M_BX", "0000 0011 0001 1101");
 
         binariesMap.put("SUB", new HashMap<>());
         binariesMap.get("SUB").put("IMM_AX", "0010 1101");
         binariesMap.get("SUB").put("IMM_BX", "1000 0001 1110 1011");
+        binariesMap.get("SUB").put("IMM8_BX", "1000 0011 1110 1011");
         binariesMap.get("SUB").put("M_AX", "0010 1011 0000 0101");
         binariesMap.get("SUB").put("M_BX", "0010 1011 0001 1101");
 
@@ -82,6 +87,26 @@ public class ObjectCodeGenerator {
         binariesMap.get("CMP").put("AX_BX", "0011 1001 1100 0011");
         binariesMap.get("CMP").put("AL_BL", "0011 1000 1100 0011");
         binariesMap.get("CMP").put("IMM_AL", "0011 1100");
+        binariesMap.get("CMP").put("IMM_AX", "0011 1101");
+        binariesMap.get("CMP").put("M_AX", "0011 1011 0000 0101");
+        binariesMap.get("CMP").put("M_AL", "0011 1010 0000 0101");
+
+        // The short forms keep the register in the lowest bits of the opcode
+        binariesMap.put("MOV_SHORT", new HashMap<>());
+        binariesMap.get("MOV_SHORT").put("IMM_AX", "1011 1000");
+        binariesMap.get("MOV_SHORT").put("IMM_BX", "1011 1011");
+        binariesMap.get("MOV_SHORT").put("IMM_AL", "1011 0000");
+        binariesMap.get("MOV_SHORT").put("IMM_BL", "1011 0011");
+
+        binariesMap.put("INC", new HashMap<>());
+        binariesMap.get("INC").put("AX", "0100 0000");
+        binariesMap.get("INC").put("BX", "0100 0011");
+
+        binariesMap.put("DEC", new HashMap<>());
+        binariesMap.get("DEC").put("AX", "0100 1000");
+        binariesMap.get("DEC").put("BX", "0100 1011");
+
+        addAllocatedRegisters();
 
         binariesMap.put("DIV", new HashMap<>());
         binariesMap.get("DIV").put("DL", "1111 0110 1111 0010");
@@ -105,79 +130,214 @@ public class ObjectCodeGenerator {
         directBinariesMap.put("JNE", "0000 1111 1000 0101");
     }
 
+    // The forms of the allocated registers, named source first like the ones of memory
+    private void addAllocatedRegisters() {
+        String[] scratchRegisters = {"AX", "BX"};
+        String[] scratchCodes = {"000", "011"};
+        String[] codes = {"001", "110", "111", "101"};
+        for (int i = 0; i < RegisterAllocation.REGISTERS.length; i++) {
+            String register = RegisterAllocation.REGISTERS[i], code = codes[i];
+            binariesMap.get("MOV").put("M_" + register, "1000 1011 " + toByte("00" + code + "101"));
+            binariesMap.get("MOV").put(register + "_M", "1000 1001 " + toByte("00" + code + "101"));
+            binariesMap.get("MOV").put("IMM_" + register, "1100 0111 " + toByte("11000" + code));
+            binariesMap.get("MOV_SHORT").put("IMM_" + register, toByte("10111" + code));
+            binariesMap.get("ADD").put("M_" + register, "0000 0011 " + toByte("00" + code + "101"));
+            binariesMap.get("SUB").put("M_" + register, "0010 1011 " + toByte("00" + code + "101"));
+            binariesMap.get("ADD").put("IMM_" + register, "1000 0001 " + toByte("11000" + code));
+            binariesMap.get("SUB").put("IMM_" + register, "1000 0001 " + toByte("11101" + code));
+            binariesMap.get("ADD").put("IMM8_" + register, "1000 0011 " + toByte("11000" + code));
+            binariesMap.get("SUB").put("IMM8_" + register, "1000 0011 " + toByte("11101" + code));
+            binariesMap.get("CMP").put("M_" + register, "0011 1011 " + toByte("00" + code + "101"));
+            binariesMap.get("CMP").put("IMM_" + register, "1000 0001 " + toByte("11111" + code));
+            binariesMap.get("CMP").put("IMM8_" + register, "1000 0011 " + toByte("11111" + code));
+            binariesMap.get("CMP").put(register + "_AX", "0011 1011 " + toByte("11000" + code));
+            binariesMap.get("INC").put(register, toByte("01000" + code));
+            binariesMap.get("DEC").put(register, toByte("01001" + code));
+            for (int j = 0; j < scratchRegisters.length; j++) {
+                String scratchRegister = scratchRegisters[j], scratchCode = scratchCodes[j];
+                binariesMap.get("MOV").put(register + "_" + scratchRegister, "1000 1011 " + toByte("11" + scratchCode + code));
+                binariesMap.get("MOV").put(scratchRegister + "_" + register, "1000 1011 " + toByte("11" + code + scratchCode));
+                binariesMap.get("ADD").put(register + "_" + scratchRegister, "0000 0011 " + toByte("11" + scratchCode + code));
+                binariesMap.get("SUB").put(register + "_" + scratchRegister, "0010 1011 " + toByte("11" + scratchCode + code));
+            }
+            for (int j = 0; j < RegisterAllocation.REGISTERS.length; j++) {
+                String source = RegisterAllocation.REGISTERS[j];
+                binariesMap.get("ADD").put(source + "_" + register, "0000 0011 " + toByte("11" + code + codes[j]));
+                binariesMap.get("SUB").put(source + "_" + register, "0010 1011 " + toByte("11" + code + codes[j]));
+                binariesMap.get("CMP").put(source + "_" + register, "0011 1011 " + toByte("11" + code + codes[j]));
+            }
+        }
+    }
+
+    private static String toByte(String bits) {
+        return bits.substring(0, 4) + " " + bits.substring(4);
+    }
+
     public String getObjectCode() {
         addPrintUtilities();
-        generate(syntaxTree.getRoot());
+        addVariables();
+        for (int i = 0; i < threeAddressCode.size(); i++) {
+            generate(i);
+        }
+        addPendingInstructions();
+        // Every address has the same length as its placeholder, so patching from the end keeps the earlier positions
+        for (int i = pendingJumps.size() - 1; i >= 0; i--) {
+            int index = pendingJumps.get(i)[0], label = pendingJumps.get(i)[1];
+            code.replace(index, index + 39, getAddress(labelOffsets[label]));
+        }
         return data.toString() + "\n" + code.toString();
     }
 
-    private void generate(Node node) {
-        int openIf = -1, openWhile = -1;
+    // The bytes of code in the last object code generated
+    public int getCodeSize() {
+        return codeOffset;
+    }
 
-        if (node instanceof Node.Declaration declarationNode) {
-            String fullId = declarationNode.getFullId();
-            Token dataType = declarationNode.getDataType();
-            data.append(dataSegment).append(":").append(getHexOffset(symbolDataMap.get(fullId).offset())).append(" ");
-            data.append(getDefaultValue(dataType)).append("\n");
-        } else if (node instanceof Node.Assignment assignmentNode) {
-            String fullId = assignmentNode.getFullId();
-            Token dataType = symbolDataMap.get(fullId).dataType();
-            if (dataType == Token.INT) {
-                assignInt(assignmentNode, fullId);
+    public int getInstructionCount() {
+        return instructionCount;
+    }
+
+    // The bytes of code the peephole took out of the last object code generated
+    public int getSavedBytes() {
+        return savedBytes;
+    }
+
+    public void setOptimizing(boolean optimizing) {
+        this.optimizing = optimizing;
+    }
+
+    public boolean isOptimizing() {
+        return optimizing;
+    }
+
+    public Peephole getPeephole() {
+        return peephole;
+    }
+
+    private void generate(int instruction) {
+        Opcode opcode = threeAddressCode.getOpcode(instruction);
+        Token dataType = threeAddressCode.getType(instruction);
+        int result = threeAddressCode.getResult(instruction);
+        int left = threeAddressCode.getLeft(instruction), right = threeAddressCode.getRight(instruction);
+
+        if (opcode != Opcode.MOVE && opcode != Opcode.ADD && opcode != Opcode.SUB) {
+            if (opcode.isConditionalJump() && dataType != Token.STRING) {
+                addPendingInstruction("CMP", dataType, left, right);
             }
-            if (dataType == Token.BOOLEAN) {
-                assignBoolean(assignmentNode, fullId);
+            addPendingInstructions();
+        }
+
+        if (opcode == Opcode.MOVE) {
+            if (ThreeAddressCode.isSymbol(result) && ThreeAddressCode.isSymbol(left)) {
+                // Memory is copied through the first scratch register
+                addPendingInstruction("MOV", dataType, ThreeAddressCode.temporary(0), left);
+                addPendingInstruction("MOV", dataType, result, ThreeAddressCode.temporary(0));
+                return;
             }
-            if (dataType == Token.STRING) {
-                assignString(assignmentNode, fullId);
+            addPendingInstruction("MOV", dataType, result, left);
+        }
+        else if (opcode == Opcode.ADD || opcode == Opcode.SUB) {
+            if (left != result) {
+                addPendingInstruction("MOV", dataType, result, left);
             }
+            addPendingInstruction(opcode.name(), dataType, result, right);
+        }
+        else if (opcode == Opcode.STRING) {
+            assignString(threeAddressCode.getString(instruction), ThreeAddressCode.getIndex(result));
         }
-        else if (node instanceof Node.Print printNode) {
-            SymbolData symbolData = symbolDataMap.get(printNode.getFullId());
-            if (symbolData.dataType() == Token.INT) {
-                addIntToString(symbolData.offset());
+        else if (opcode == Opcode.PRINT) {
+            int symbol = ThreeAddressCode.getIndex(left);
+            if (dataType == Token.INT) {
+                addIntToString(symbols.getOffset(symbol));
                 addPrint(0);
             }
-            if (symbolData.dataType() == Token.BOOLEAN) {
-                addBooleanToInt(symbolData.offset());
+            if (dataType == Token.BOOLEAN) {
+                addBooleanToInt(symbols.getOffset(symbol));
                 addPrint(21);
             }
-            if (symbolData.dataType() == Token.STRING) {
-                addPrint(symbolData.offset());
+            if (dataType == Token.STRING) {
+                addPrint(symbols.getOffset(symbol));
             }
         }
-        else if (node instanceof Node.If ifNode) {
-            addFlowControl(ifNode.getExpression(), Token.IF);
-            openIf = ifCount++;
-        } else if (node instanceof Node.While whileNode) {
-            addFlowControl(whileNode.getExpression(), Token.WHILE);
-            openWhile = whileCount++;
+        else if (opcode == Opcode.LABEL) {
+            labelOffsets[result] = codeOffset;
         }
-        if (node.isBlockNode()) {
-            for (Node child : node.getChildren()) {
-                generate(child);
-            }
-        }
-        if (openIf != -1) {
-            String ifContinueString = "if_continue" + openIf;
-            int index = flowControlContinuesPositionsMap.get(ifContinueString);
-            String offset = getBinaryValueOrDisplacement(codeOffset, 16) + getBinaryValueOrDisplacement(codeSegmentOffset, 16);
-            code.replace(index, index + 39, offset);
+        else if (opcode.isJump()) {
+            addJump(opcode.getMnemonic(), result);
         }
-        if (openWhile != -1) {
-            String whileContinueString = "while_continue" + openWhile;
-            int index = flowControlContinuesPositionsMap.get(whileContinueString);
+    }
 
-            String openWhileString = "while" + openWhile;
+    private void addPendingInstruction(String operation, Token dataType, int destination, int source) {
+        pendingInstructions.add(new Peephole.Instruction(operation, dataType, destination, source));
+    }
+
+    // The bytes saved are counted against the instructions as they came, in their long forms
+    private void addPendingInstructions() {
+        if (optimizing) {
+            for (Peephole.Instruction instruction : pendingInstructions) {
+                savedBytes += getByteCount(getBinary(instruction, false));
+            }
+            peephole.optimize(pendingInstructions);
+        }
+        for (Peephole.Instruction instruction : pendingInstructions) {
+            String binary = getBinary(instruction, optimizing);
+            if (optimizing) {
+                savedBytes -= getByteCount(binary);
+            }
             code.append(getCodePrefix()).append(" ");
             updateCodeLength();
-            String whileBeginOffset = getBinaryValueOrDisplacement(flowControlOffsetMap.get(openWhileString), 16) + getBinaryValueOrDisplacement(codeSegmentOffset, 16);
-            code.append(directBinariesMap.get("JMP")).append(" ").append(whileBeginOffset).append("\n");
+            code.append(binary).append("\n");
             updateCodeOffset();
+        }
+        pendingInstructions.clear();
+    }
+
+    private String getBinary(Peephole.Instruction instruction, boolean isShort) {
+        String operation = instruction.operation();
+        Token dataType = instruction.dataType();
+        int destination = instruction.destination(), source = instruction.source();
+        if (operation.equals("CMP") && ThreeAddressCode.isTemporary(destination) && ThreeAddressCode.isTemporary(source)) {
+            return binariesMap.get("CMP").get(getRegister(destination, dataType) + "_" + getRegister(source, dataType));
+        }
+        if (operation.equals("INC") || operation.equals("DEC")) {
+            return binariesMap.get(operation).get(getRegister(destination, dataType));
+        }
+        if (operation.equals("MOV")) {
+            if (ThreeAddressCode.isSymbol(destination)) {
+                if (ThreeAddressCode.isConstant(source)) {
+                    return getImmediateStore(destination, threeAddressCode.getConstant(source), dataType);
+                }
+                return getStore(getRegister(source, dataType), destination);
+            }
+            if (ThreeAddressCode.isConstant(source) || ThreeAddressCode.isSymbol(source)) {
+                return getLoad(getRegister(destination, dataType), source, dataType, isShort);
+            }
+            return binariesMap.get("MOV").get(getRegister(source, dataType) + "_" + getRegister(destination, dataType));
+        }
+        return getIntOperation(operation, getRegister(destination, dataType), source, dataType, isShort);
+    }
+
+    private int getByteCount(String binary) {
+        return binary.replace(" ", "").length() / 8;
+    }
 
-            String offset = getBinaryValueOrDisplacement(codeOffset, 16) + getBinaryValueOrDisplacement(codeSegmentOffset, 16);
-            code.replace(index, index + 39, offset);
+    // A jump back goes straight to its label, and one forward gets a placeholder that is patched at the end
+    private void addJump(String jump, int label) {
+        code.append(getCodePrefix()).append(" ");
+        updateCodeLength();
+        code.append(directBinariesMap.get(jump)).append(" ");
+        if (labelOffsets[label] != -1) {
+            code.append(getAddress(labelOffsets[label])).append("\n");
+        }
+        else {
+            pendingJumps.add(new int[]{code.length(), label});
+            code.append(getBinaryValueOrDisplacement(0, 32)).append("\n");
         }
+        updateCodeOffset();
+    }
+
+    private String getAddress(int offset) {
+        return getBinaryValueOrDisplacement(offset, 16) + getBinaryValueOrDisplacement(codeSegmentOffset, 16);
     }
 
     private void addPrintUtilities() {
@@ -190,6 +350,22 @@ public class ObjectCodeGenerator {
         data.append("0000:0015 0000 0000 0000 0000").append("\n");
     }
 
+    // The initial values of the variables that have their bytes to themselves, in the order of their offsets
+    private void addVariables() {
+        long[] order = new long[symbols.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = (long) symbols.getOffset(i) << 32 | i;
+        }
+        Arrays.sort(order);
+        for (long entry : order) {
+            int symbol = (int) entry;
+            if (!symbols.isShared(symbol)) {
+                data.append(dataSegment).append(":").append(getHexOffset(symbols.getOffset(symbol))).append(" ");
+                data.append(getDefaultValue(symbol)).append("\n");
+            }
+        }
+    }
+
     private void addIntToString(int numOffset) {
         code.append(getCodePrefix()).append(" ");
         updateCodeLength();
@@ -255,98 +431,12 @@ public class ObjectCodeGenerator {
         updateCodeOffset();
     }
 
-    public boolean isImmediate(String fullId) {
-        for (int i = 0; i < fullId.length(); i++) {
-            if (fullId.charAt(i) < '0' || fullId.charAt(i) > '9') {
-                return false;
-            }
-        }
-        return true;
-    }
-
     private String getCodePrefix() {
         return codeSegment + ":" + getHexOffset(codeOffset);
     }
 
-    private void assignInt(Node.Assignment assignmentNode, String var) {
-        String idOrVar = assignmentNode.getExpression().getFirst().getFullId();
-        code.append(getCodePrefix()).append(" ");
-        updateCodeLength();
-
-        boolean immediateOperation = isImmediate(idOrVar);
-        if (immediateOperation) {
-            code.append(binariesMap.get("MOV").get("IMM_AX")).append(" ");
-            code.append(getBinaryValueOrDisplacement(Integer.parseInt(idOrVar), 16)).append("\n");
-        }
-        else {
-            code.append(binariesMap.get("MOV").get("M_AX")).append(" ");
-            code.append(getBinaryValueOrDisplacement(symbolDataMap.get(idOrVar).offset(), 32)).append("\n");
-        }
-        updateCodeOffset();
-
-        for (int i = 1; i < assignmentNode.getExpression().size(); i += 2) {
-            code.append(getCodePrefix()).append(" ");
-            updateCodeLength();
-            String value = assignmentNode.getExpression().get(i + 1).getFullId();
-            immediateOperation = isImmediate(value);
-            if (assignmentNode.getExpression().get(i).getToken() == Token.PLUS) {
-                if (immediateOperation) {
-                    code.append(binariesMap.get("ADD").get("IMM_AX")).append(" ");
-                }
-                else {
-                    code.append(binariesMap.get("ADD").get("M_AX")).append(" ");;
-                }
-            }
-            else if (assignmentNode.getExpression().get(i).getToken() == Token.MINUS) {
-                if (immediateOperation) {
-                    code.append(binariesMap.get("SUB").get("IMM_AX")).append(" ");;
-                }
-                else {
-                    code.append(binariesMap.get("SUB").get("M_AX")).append(" ");;
-                }
-            }
-            if (immediateOperation) {
-                code.append(getBinaryValueOrDisplacement(Integer.parseInt(value), 16)).append("\n");
-            }
-            else {
-                code.append(getBinaryValueOrDisplacement(symbolDataMap.get(value).offset(), 32)).append("\n");
-            }
-            updateCodeOffset();
-        }
-        code.append(getCodePrefix()).append(" ");
-        updateCodeLength();
-        code.append(binariesMap.get("MOV").get("AX_M")).append(" ");
-        code.append(getBinaryValueOrDisplacement(symbolDataMap.get(var).offset(), 32)).append("\n");
-        updateCodeOffset();
-    }
-
-    private void assignBoolean(Node.Assignment assignmentNode, String var) {
-        Token firstToken = assignmentNode.getExpression().getFirst().getToken();
-        if (firstToken == Token.IDENTIFIER) {
-            String value = assignmentNode.getExpression().getFirst().getFullId();
-            code.append(getCodePrefix()).append(" ");
-            updateCodeLength();
-            code.append(binariesMap.get("MOV").get("M_AL")).append(" ");
-            code.append(getBinaryValueOrDisplacement(symbolDataMap.get(value).offset(), 32)).append("\n");
-            updateCodeOffset();
-            code.append(getCodePrefix()).append(" ");
-            updateCodeLength();
-            code.append(binariesMap.get("MOV").get("AL_M")).append(" ");
-            code.append(getBinaryValueOrDisplacement(symbolDataMap.get(var).offset(), 32)).append("\n");
-            updateCodeOffset();
-            return;
-        }
-        code.append(getCodePrefix()).append(" ");
-        updateCodeLength();
-        code.append(binariesMap.get("MOV").get("IMM_M8")).append(" ");
-        code.append(getBinaryValueOrDisplacement(symbolDataMap.get(var).offset(), 32));
-        code.append(getBinaryValueOrDisplacement(firstToken == Token.TRUE ? 1 : 0, 8)).append("\n");
-        updateCodeOffset();
-    }
-
-    private void assignString(Node.Assignment assignmentNode, String var) {
-        String value = assignmentNode.getExpression().getFirst().getId();
-        int varOffset = symbolDataMap.get(var).offset();
+    private void assignString(String value, int var) {
+        int varOffset = symbols.getOffset(var);
         for (int i = 0; i < value.length(); i++) {
             code.append(getCodePrefix()).append(" ");
             updateCodeLength();
@@ -363,185 +453,63 @@ public class ObjectCodeGenerator {
         updateCodeOffset();
     }
 
-    private void addFlowControl(ArrayList<TokenTuple> expression, Token flowControlType) {
-        Token firstToken = expression.getFirst().getToken(), dataType = null;
-        if (firstToken == Token.IDENTIFIER) {
-            dataType = symbolDataMap.get(expression.getFirst().getFullId()).dataType();
-        }
-        else if (firstToken == Token.NUMBER) {
-            dataType = Token.INT;
-        }
-        else if (firstToken == Token.TRUE || firstToken == Token.FALSE) {
-            dataType = Token.BOOLEAN;
-        }
-        else if (firstToken == Token.STRING_VALUE) {
-            dataType = Token.STRING;
+    private String getImmediateStore(int var, int value, Token dataType) {
+        int offset = symbols.getOffset(ThreeAddressCode.getIndex(var));
+        if (dataType == Token.INT) {
+            return binariesMap.get("MOV").get("IMM_M16") + " " + getBinaryValueOrDisplacement(offset, 32)
+                    + getBinaryValueOrDisplacement(value, 16);
         }
+        return binariesMap.get("MOV").get("IMM_M8") + " " + getBinaryValueOrDisplacement(offset, 32)
+                + getBinaryValueOrDisplacement(value, 8);
+    }
 
-        if (flowControlType == Token.WHILE) {
-            String openWhileString = "while" + whileCount;
-            flowControlOffsetMap.put(openWhileString, codeOffset);
+    private String getLoad(String register, int operand, Token dataType, boolean isShort) {
+        if (ThreeAddressCode.isConstant(operand)) {
+            return binariesMap.get(isShort ? "MOV_SHORT" : "MOV").get("IMM_" + register) + " "
+                    + getBinaryValueOrDisplacement(threeAddressCode.getConstant(operand), dataType == Token.INT ? 16 : 8);
         }
+        return binariesMap.get("MOV").get("M_" + register) + " "
+                + getBinaryValueOrDisplacement(symbols.getOffset(ThreeAddressCode.getIndex(operand)), 32);
+    }
 
-        int operatorPosition = 0;
-        for (int i = 0; i < expression.size(); i++) {
-            if (inverseJumpsMap.containsKey(expression.get(i).getToken())) {
-                operatorPosition = i;
-                break;
-            }
-        }
-
-        if (dataType == Token.INT) {
-            String idOrVar = expression.getFirst().getFullId();
-            code.append(getCodePrefix()).append(" ");
-            updateCodeLength();
-            boolean immediateOperation = isImmediate(idOrVar);
-            if (immediateOperation) {
-                code.append(binariesMap.get("MOV").get("IMM_AX")).append(" ");
-                code.append(getBinaryValueOrDisplacement(Integer.parseInt(idOrVar), 16)).append("\n");
-            }
-            else {
-                code.append(binariesMap.get("MOV").get("M_AX")).append(" ");
-                code.append(getBinaryValueOrDisplacement(symbolDataMap.get(idOrVar).offset(), 32)).append("\n");
-            }
-            updateCodeOffset();
-
-            for (int i = 1; i < operatorPosition - 1; i += 2) {
-                code.append(getCodePrefix()).append(" ");
-                updateCodeLength();
-                String value = expression.get(i + 1).getFullId();
-                immediateOperation = isImmediate(value);
-                if (expression.get(i).getToken() == Token.PLUS) {
-                    if (immediateOperation) {
-                        code.append(binariesMap.get("ADD").get("IMM_AX")).append(" ");
-                    }
-                    else {
-                        code.append(binariesMap.get("ADD").get("M_AX")).append(" ");;
-                    }
-                }
-                else if (expression.get(i).getToken() == Token.MINUS) {
-                    if (immediateOperation) {
-                        code.append(binariesMap.get("SUB").get("IMM_AX")).append(" ");;
-                    }
-                    else {
-                        code.append(binariesMap.get("SUB").get("M_AX")).append(" ");;
-                    }
-                }
-                if (immediateOperation) {
-                    code.append(getBinaryValueOrDisplacement(Integer.parseInt(value), 16)).append("\n");
-                }
-                else {
-                    code.append(getBinaryValueOrDisplacement(symbolDataMap.get(value).offset(), 32)).append("\n");
-                }
-                updateCodeOffset();
-            }
-
-
-            idOrVar = expression.get(operatorPosition + 1).getFullId();
-            code.append(getCodePrefix()).append(" ");
-            updateCodeLength();
-            immediateOperation = isImmediate(idOrVar);
-            if (immediateOperation) {
-                code.append(binariesMap.get("MOV").get("IMM_BX")).append(" ");
-                code.append(getBinaryValueOrDisplacement(Integer.parseInt(idOrVar), 16)).append("\n");
-            }
-            else {
-                code.append(binariesMap.get("MOV").get("M_BX")).append(" ");
-                code.append(getBinaryValueOrDisplacement(symbolDataMap.get(idOrVar).offset(), 32)).append("\n");
-            }
-            updateCodeOffset();
+    // Only the first scratch register has the short form that stores it
+    private String getStore(String register, int var) {
+        return binariesMap.get("MOV").get(register + "_M") + " "
+                + getBinaryValueOrDisplacement(symbols.getOffset(ThreeAddressCode.getIndex(var)), 32);
+    }
 
-            for (int i = operatorPosition + 2; i < expression.size(); i += 2) {
-                code.append(getCodePrefix()).append(" ");
-                updateCodeLength();
-                String value = expression.get(i + 1).getFullId();
-                immediateOperation = isImmediate(value);
-                if (expression.get(i).getToken() == Token.PLUS) {
-                    if (immediateOperation) {
-                        code.append(binariesMap.get("ADD").get("IMM_BX")).append(" ");
-                    }
-                    else {
-                        code.append(binariesMap.get("ADD").get("M_BX")).append(" ");;
-                    }
-                }
-                else if (expression.get(i).getToken() == Token.MINUS) {
-                    if (immediateOperation) {
-                        code.append(binariesMap.get("SUB").get("IMM_BX")).append(" ");;
-                    }
-                    else {
-                        code.append(binariesMap.get("SUB").get("M_BX")).append(" ");;
-                    }
-                }
-                if (immediateOperation) {
-                    code.append(getBinaryValueOrDisplacement(Integer.parseInt(value), 16)).append("\n");
-                }
-                else {
-                    code.append(getBinaryValueOrDisplacement(symbolDataMap.get(value).offset(), 32)).append("\n");
-                }
-                updateCodeOffset();
+    // A constant that fits in a signed byte saves a byte, except for AX, whose own forms are as short
+    private String getIntOperation(String instruction, String register, int operand, Token dataType, boolean isShort) {
+        if (ThreeAddressCode.isConstant(operand)) {
+            int value = threeAddressCode.getConstant(operand);
+            if (isShort && dataType == Token.INT && !register.equals("AX") && value <= 0xFFFF && (short) value == (byte) value) {
+                return binariesMap.get(instruction).get("IMM8_" + register) + " " + getBinaryValueOrDisplacement(value & 0xFF, 8);
             }
-
-            code.append(getCodePrefix()).append(" ");
-            updateCodeLength();
-            code.append(binariesMap.get("CMP").get("AX_BX")).append("\n");
-            updateCodeOffset();
+            return binariesMap.get(instruction).get("IMM_" + register) + " "
+                    + getBinaryValueOrDisplacement(value, dataType == Token.INT ? 16 : 8);
         }
-        else if (dataType == Token.BOOLEAN) {
-            code.append(getCodePrefix()).append(" ");
-            updateCodeLength();
-            String firstFullId = expression.getFirst().getFullId();
-            boolean immediateOperation = isImmediate(firstFullId);
-            if (immediateOperation) {
-                code.append(binariesMap.get("MOV").get("IMM_AL")).append(" ").append(expression.getFirst().getToken() == Token.TRUE ? 1 : 0).append("\n");
-            }
-            else {
-                code.append(binariesMap.get("MOV").get("M_AL")).append(" ").append(getBinaryValueOrDisplacement(symbolDataMap.get(firstFullId).offset(), 32)).append("\n");
-            }
-            updateCodeOffset();
-
-
-            code.append(getCodePrefix()).append(" ");
-            updateCodeLength();
-            String lastFullId = expression.getLast().getFullId();
-            immediateOperation = isImmediate(lastFullId);
-            if (immediateOperation) {
-                code.append(binariesMap.get("MOV").get("IMM_BL")).append(" ").append(expression.getLast().getToken() == Token.TRUE ? 1 : 0).append("\n");
-            }
-            else {
-                code.append(binariesMap.get("MOV").get("M_BL")).append(" ").append(getBinaryValueOrDisplacement(symbolDataMap.get(lastFullId).offset(), 32)).append("\n");
-            }
-            updateCodeOffset();
-
-            code.append(getCodePrefix()).append(" ");
-            updateCodeLength();
-            code.append(binariesMap.get("CMP").get("AL_BL")).append("\n");
-            updateCodeOffset();
+        if (!ThreeAddressCode.isSymbol(operand)) {
+            return binariesMap.get(instruction).get(getRegister(operand, dataType) + "_" + register);
         }
+        return binariesMap.get(instruction).get("M_" + register) + " "
+                + getBinaryValueOrDisplacement(symbols.getOffset(ThreeAddressCode.getIndex(operand)), 32);
+    }
 
-        code.append(getCodePrefix()).append(" ");
-        updateCodeLength();
-        String jump = inverseJumpsMap.get(expression.get(operatorPosition).getToken());
-        code.append(directBinariesMap.get(jump)).append(" ");
-
-        if (flowControlType == Token.IF) {
-            String ifContinueString = "if_continue" + ifCount;
-            flowControlContinuesPositionsMap.put(ifContinueString, code.length());
-        }
-        else if (flowControlType == Token.WHILE) {
-            String whileContinueString = "while_continue" + whileCount;
-            flowControlContinuesPositionsMap.put(whileContinueString, code.length());
+    private String getRegister(int temporary, Token dataType) {
+        if (ThreeAddressCode.isRegister(temporary)) {
+            return RegisterAllocation.REGISTERS[ThreeAddressCode.getIndex(temporary)];
         }
-
-        code.append(getBinaryValueOrDisplacement(0, 32)).append("\n");
-        updateCodeOffset();
+        String register = ThreeAddressCode.getIndex(temporary) == 0 ? "A" : "B";
+        return register + (dataType == Token.BOOLEAN ? "L" : "X");
     }
 
-    private String getDefaultValue(Token dataType) {
+    private String getDefaultValue(int var) {
+        Token dataType = symbols.getDataType(var);
         if (dataType == Token.INT) {
             return "0000 0000 0000 0000";
         }
         if (dataType == Token.STRING) {
-            return "0010 0100" + " 0010 0100".repeat(99);
+            return "0010 0100" + " 0010 0100".repeat(symbols.getSize(var) - 1);
         }
         return "0000 0000";
     }
@@ -558,6 +526,7 @@ public class ObjectCodeGenerator {
 
     private void updateCodeOffset() {
         codeOffset += getOffsetSize(code.length() - 1 - lastLength);
+        instructionCount++;
     }
 
     private int getOffsetSize(int diff) {
@@ -0,0 +1,32 @@
+package CodeGenerators;
+
+// The operations of the three-address code, with the conditional jumps named after the 8086 jump both generators emit
+// SCAN emits nothing but tells the passes that a variable may have changed
+public enum Opcode {
+    MOVE, ADD, SUB, STRING, PRINT, SCAN, LABEL, JUMP("JMP"),
+    JUMP_IF_EQUAL("JE"), JUMP_IF_DIFFERENT("JNE"),
+    JUMP_IF_LESS("JL"), JUMP_IF_LESS_EQ("JLE"),
+    JUMP_IF_GREATER("JG"), JUMP_IF_GREATER_EQ("JGE");
+
+    private final String mnemonic;
+
+    Opcode() {
+        this(null);
+    }
+
+    Opcode(String mnemonic) {
+        this.mnemonic = mnemonic;
+    }
+
+    public String getMnemonic() {
+        return mnemonic;
+    }
+
+    public boolean isJump() {
+        return mnemonic != null;
+    }
+
+    public boolean isConditionalJump() {
+        return isJump() && this != JUMP;
+    }
+}
@@ -0,0 +1,264 @@
+package CodeGenerators;
+
+import Utilities.Token;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Rewrites the instructions the generators emit between two labels, jumps or prints, a few at a time
+public class Peephole {
+    // INC and DEC have no source, and CMP no result
+    public record Instruction(String operation, Token dataType, int destination, int source) {
+    }
+
+    public interface Pattern {
+        // Rewrites the instructions from the index given when they match, and tells whether it did
+        boolean apply(ArrayList<Instruction> instructions, int index);
+    }
+
+    private final ArrayList<Pattern> patterns;
+    private ThreeAddressCode threeAddressCode;
+    private int rewriteCount;
+
+    public Peephole() {
+        patterns = new ArrayList<>();
+        patterns.add(this::removeRedundantLoad);
+        patterns.add(this::removeRedundantStore);
+        patterns.add(this::storeImmediate);
+        patterns.add(this::useIncrement);
+        patterns.add(this::operateInPlace);
+        patterns.add(this::forwardConstant);
+        patterns.add(this::compareDirectly);
+        patterns.add(this::removeDeadLoad);
+    }
+
+    public void initialize(ThreeAddressCode threeAddressCode) {
+        this.threeAddressCode = threeAddressCode;
+        rewriteCount = 0;
+    }
+
+    public void addPattern(Pattern pattern) {
+        patterns.add(pattern);
+    }
+
+    public List<Pattern> getPatterns() {
+        return patterns;
+    }
+
+    public void optimize(ArrayList<Instruction> instructions) {
+        boolean hasChanged;
+        do {
+            hasChanged = false;
+            for (int i = 0; i < instructions.size(); i++) {
+                for (Pattern pattern : patterns) {
+                    if (i < instructions.size() && pattern.apply(instructions, i)) {
+                        rewriteCount++;
+                        hasChanged = true;
+                    }
+                }
+            }
+        } while (hasChanged);
+    }
+
+    // The number of rewrites since the peephole was initialized
+    public int getRewriteCount() {
+        return rewriteCount;
+    }
+
+    // MOV x, AX followed by MOV AX, x: the register already holds the variable
+    private boolean removeRedundantLoad(ArrayList<Instruction> instructions, int index) {
+        if (index + 1 >= instructions.size()) {
+            return false;
+        }
+        Instruction store = instructions.get(index), load = instructions.get(index + 1);
+        if (!isMove(store) || !isMove(load) || !isVariable(store.destination())
+                || !ThreeAddressCode.isTemporary(store.source()) || store.dataType() != load.dataType()
+                || load.destination() != store.source() || load.source() != store.destination()) {
+            return false;
+        }
+        instructions.remove(index + 1);
+        return true;
+    }
+
+    // MOV AX, x followed by MOV x, AX: the variable already holds the register
+    private boolean removeRedundantStore(ArrayList<Instruction> instructions, int index) {
+        if (index + 1 >= instructions.size()) {
+            return false;
+        }
+        Instruction load = instructions.get(index), store = instructions.get(index + 1);
+        if (!isMove(load) || !isMove(store) || !ThreeAddressCode.isTemporary(load.destination())
+                || !isVariable(load.source()) || load.dataType() != store.dataType()
+                || store.destination() != load.source() || store.source() != load.destination()) {
+            return false;
+        }
+        instructions.remove(index + 1);
+        return true;
+    }
+
+    // MOV AL, 1 followed by MOV b, AL when AL is not read again: the constant is stored directly
+    private boolean storeImmediate(ArrayList<Instruction> instructions, int index) {
+        if (index + 1 >= instructions.size()) {
+            return false;
+        }
+        Instruction load = instructions.get(index), store = instructions.get(index + 1);
+        if (!isMove(load) || !isMove(store) || !ThreeAddressCode.isTemporary(load.destination())
+                || !ThreeAddressCode.isConstant(load.source()) || !isVariable(store.destination())
+                || store.source() != load.destination() || load.dataType() != store.dataType()
+                || !isDeadAfter(instructions, index + 1, load.destination(), load.dataType())) {
+            return false;
+        }
+        instructions.set(index, new Instruction("MOV", store.dataType(), store.destination(), load.source()));
+        instructions.remove(index + 1);
+        return true;
+    }
+
+    // ADD AX, 1 is INC AX. Adding 0 is dropped unless it sets the flags a string condition may jump on
+    private boolean useIncrement(ArrayList<Instruction> instructions, int index) {
+        Instruction instruction = instructions.get(index);
+        boolean isAddition = instruction.operation().equals("ADD");
+        if (!isAddition && !instruction.operation().equals("SUB")
+                || ThreeAddressCode.isSymbol(instruction.destination())
+                || !ThreeAddressCode.isConstant(instruction.source())) {
+            return false;
+        }
+        int value = threeAddressCode.getConstant(instruction.source());
+        if (value == 0) {
+            if (!isFlagsSetAfter(instructions, index)) {
+                return false;
+            }
+            instructions.remove(index);
+            return true;
+        }
+        if (value != 1 && value != 0xFFFF) {
+            return false;
+        }
+        String operation = isAddition == (value == 1) ? "INC" : "DEC";
+        instructions.set(index, new Instruction(operation, instruction.dataType(), instruction.destination(), ThreeAddressCode.NONE));
+        return true;
+    }
+
+    // MOV AX, CX, operations on AX and MOV CX, AX: the operations are done on CX
+    private boolean operateInPlace(ArrayList<Instruction> instructions, int index) {
+        Instruction load = instructions.get(index);
+        if (!isMove(load) || !ThreeAddressCode.isTemporary(load.destination())
+                || !ThreeAddressCode.isRegister(load.source())) {
+            return false;
+        }
+        int register = load.destination(), variable = load.source();
+        int end = index + 1;
+        while (end < instructions.size() && isOperation(instructions.get(end), register, variable)) {
+            end++;
+        }
+        if (end == index + 1 || end == instructions.size()) {
+            return false;
+        }
+        Instruction store = instructions.get(end);
+        if (!isMove(store) || store.destination() != variable || store.source() != register
+                || !isDeadAfter(instructions, end, register, store.dataType())) {
+            return false;
+        }
+        for (int i = index + 1; i < end; i++) {
+            Instruction operation = instructions.get(i);
+            instructions.set(i, new Instruction(operation.operation(), operation.dataType(), variable, operation.source()));
+        }
+        instructions.remove(end);
+        instructions.remove(index);
+        return true;
+    }
+
+    // MOV x, 5 and then MOV CX, x before x changes: the register is loaded with the constant
+    private boolean forwardConstant(ArrayList<Instruction> instructions, int index) {
+        Instruction store = instructions.get(index);
+        if (!isMove(store) || !isVariable(store.destination()) || !ThreeAddressCode.isConstant(store.source())) {
+            return false;
+        }
+        boolean hasChanged = false;
+        for (int i = index + 1; i < instructions.size() && instructions.get(i).destination() != store.destination(); i++) {
+            Instruction load = instructions.get(i);
+            if (isMove(load) && load.source() == store.destination() && load.dataType() == store.dataType()) {
+                instructions.set(i, new Instruction("MOV", load.dataType(), load.destination(), store.source()));
+                hasChanged = true;
+            }
+        }
+        return hasChanged;
+    }
+
+    // MOV AX, CX and MOV BX, 5 followed by CMP AX, BX: CX is compared with 5
+    private boolean compareDirectly(ArrayList<Instruction> instructions, int index) {
+        Instruction compare = instructions.get(index);
+        if (!compare.operation().equals("CMP") || index == 0 || !ThreeAddressCode.isTemporary(compare.destination())
+                || !isDeadAfter(instructions, index, compare.destination(), compare.dataType())) {
+            return false;
+        }
+        Instruction previous = instructions.get(index - 1);
+        if (ThreeAddressCode.isTemporary(compare.source())) {
+            if (!isMove(previous) || previous.destination() != compare.source()
+                    || ThreeAddressCode.isTemporary(previous.source()) || previous.dataType() != compare.dataType()
+                    || !isDeadAfter(instructions, index, compare.source(), compare.dataType())) {
+                return false;
+            }
+            instructions.set(index, new Instruction("CMP", compare.dataType(), compare.destination(), previous.source()));
+            instructions.remove(index - 1);
+            return true;
+        }
+        if (!isMove(previous) || previous.destination() != compare.destination()
+                || !ThreeAddressCode.isRegister(previous.source())) {
+            return false;
+        }
+        instructions.set(index, new Instruction("CMP", compare.dataType(), previous.source(), compare.source()));
+        instructions.remove(index - 1);
+        return true;
+    }
+
+    private static boolean isFlagsSetAfter(ArrayList<Instruction> instructions, int index) {
+        for (int i = index + 1; i < instructions.size(); i++) {
+            if (!isMove(instructions.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // An operation on the register that reads neither the register nor the variable
+    private static boolean isOperation(Instruction instruction, int register, int variable) {
+        String operation = instruction.operation();
+        boolean isArithmetic = operation.equals("ADD") || operation.equals("SUB") || operation.equals("INC")
+                || operation.equals("DEC");
+        return isArithmetic && instruction.destination() == register && instruction.source() != register
+                && instruction.source() != variable && !ThreeAddressCode.isTemporary(instruction.source());
+    }
+
+    // A register loaded and never read, as the other patterns can leave it
+    private boolean removeDeadLoad(ArrayList<Instruction> instructions, int index) {
+        Instruction load = instructions.get(index);
+        if (!isMove(load) || !ThreeAddressCode.isTemporary(load.destination())
+                || !isDeadAfter(instructions, index, load.destination(), load.dataType())) {
+            return false;
+        }
+        instructions.remove(index);
+        return true;
+    }
+
+    // Whether a register is written before it is read again, or the run ends first
+    private static boolean isDeadAfter(ArrayList<Instruction> instructions, int index, int register, Token dataType) {
+        for (int i = index + 1; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            if (instruction.source() == register) {
+                return false;
+            }
+            if (instruction.destination() == register) {
+                // Writing the low byte leaves the rest of the register as it was
+                return isMove(instruction) && (instruction.dataType() == Token.INT || dataType == Token.BOOLEAN);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isVariable(int operand) {
+        return ThreeAddressCode.isSymbol(operand) || ThreeAddressCode.isRegister(operand);
+    }
+
+    private static boolean isMove(Instruction instruction) {
+        return instruction.operation().equals("MOV");
+    }
+}
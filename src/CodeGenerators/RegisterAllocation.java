@@ -0,0 +1,248 @@
+package CodeGenerators;
+
+import Utilities.Symbols;
+import Utilities.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+// Keeps the ints each outermost loop uses most in the registers the generators leave free, by a linear scan
+public class RegisterAllocation {
+    public static final String[] REGISTERS = {"CX", "SI", "DI", "BP"};
+    private static final int MAXIMUM_DEPTH = 4;
+    private ThreeAddressCode code;
+    private Symbols symbols;
+    private Liveness liveness;
+    private ArrayList<ThreeAddressCode.Insertion> insertions;
+    private int allocatedCount;
+
+    private static class Interval {
+        private final int symbol;
+        private int start, end, weight;
+        private int register = -1;
+
+        private Interval(int symbol, int start) {
+            this.symbol = symbol;
+            this.start = start;
+            this.end = start;
+        }
+    }
+
+    public void initialize(ThreeAddressCode code) {
+        this.code = code;
+        symbols = code.getSymbols();
+        liveness = new Liveness();
+        insertions = new ArrayList<>();
+        allocatedCount = 0;
+    }
+
+    public void allocate() {
+        liveness.initialize(code);
+        liveness.analyze();
+        // The position of the label where every loop continues, by the position of the one it starts at
+        int[] loopEnds = findLoops();
+        for (int i = 0; i < code.size(); i++) {
+            if (loopEnds[i] != -1) {
+                allocate(i, loopEnds[i], loopEnds);
+                i = loopEnds[i];
+            }
+        }
+        if (!insertions.isEmpty()) {
+            insertions.sort(Comparator.comparingInt(ThreeAddressCode.Insertion::position));
+            code.insert(insertions);
+        }
+    }
+
+    // The number of ints kept in a register by the last run, counted once for every loop
+    public int getAllocatedCount() {
+        return allocatedCount;
+    }
+
+    // A loop without its continue label runs until the end of the code
+    private int[] findLoops() {
+        int[] loopEnds = new int[code.size()];
+        Arrays.fill(loopEnds, -1);
+        int[] whileStarts = new int[code.getLabelCount()];
+        Arrays.fill(whileStarts, -1);
+        for (int i = 0; i < code.size(); i++) {
+            if (code.getOpcode(i) != Opcode.LABEL) {
+                continue;
+            }
+            int label = code.getResult(i);
+            int number = code.getLabelNumber(label);
+            if (code.getLabelKind(label) == ThreeAddressCode.LabelKind.WHILE) {
+                whileStarts[number] = i;
+                loopEnds[i] = code.size();
+            }
+            else if (code.getLabelKind(label) == ThreeAddressCode.LabelKind.WHILE_CONTINUE && whileStarts[number] != -1) {
+                loopEnds[whileStarts[number]] = i;
+            }
+        }
+        return loopEnds;
+    }
+
+    private void allocate(int loopStart, int loopEnd, int[] loopEnds) {
+        Interval[] intervals = new Interval[symbols.size()];
+        ArrayList<Interval> used = new ArrayList<>();
+        int depth = 0;
+        for (int i = loopStart; i < loopEnd; i++) {
+            if (code.getOpcode(i) == Opcode.LABEL) {
+                ThreeAddressCode.LabelKind kind = code.getLabelKind(code.getResult(i));
+                if (kind == ThreeAddressCode.LabelKind.WHILE) {
+                    depth++;
+                }
+                else if (kind == ThreeAddressCode.LabelKind.WHILE_CONTINUE) {
+                    depth--;
+                }
+                continue;
+            }
+            Opcode opcode = code.getOpcode(i);
+            if (opcode != Opcode.MOVE && opcode != Opcode.ADD && opcode != Opcode.SUB && opcode != Opcode.PRINT) {
+                continue;
+            }
+            // A print reads memory, so it only costs a store
+            int weight = opcode == Opcode.PRINT ? 0 : (int) Math.pow(10, Math.min(depth, MAXIMUM_DEPTH));
+            for (int operand : new int[]{code.getResult(i), code.getLeft(i), code.getRight(i)}) {
+                if (!ThreeAddressCode.isSymbol(operand) || symbols.getDataType(ThreeAddressCode.getIndex(operand)) != Token.INT) {
+                    continue;
+                }
+                int symbol = ThreeAddressCode.getIndex(operand);
+                if (intervals[symbol] == null) {
+                    intervals[symbol] = new Interval(symbol, i);
+                    used.add(intervals[symbol]);
+                }
+                intervals[symbol].end = i;
+                intervals[symbol].weight += weight;
+            }
+        }
+        if (used.isEmpty()) {
+            return;
+        }
+        extendIntervals(used, loopStart, loopEnd, loopEnds);
+        scan(used);
+        rewrite(intervals, used, loopStart, loopEnd);
+    }
+
+    // A value live where a loop starts is kept through all of the loop
+    private void extendIntervals(ArrayList<Interval> used, int loopStart, int loopEnd, int[] loopEnds) {
+        boolean hasChanged;
+        do {
+            hasChanged = false;
+            for (int start = loopStart; start < loopEnd; start++) {
+                if (loopEnds[start] == -1) {
+                    continue;
+                }
+                int end = start == loopStart ? loopEnd : Math.min(loopEnds[start], loopEnd);
+                BitSet live = getLiveAt(start);
+                for (Interval interval : used) {
+                    boolean isInside = interval.end >= start && interval.start <= end;
+                    if ((isInside || start == loopStart) && live.get(interval.symbol)
+                            && (interval.start > start || interval.end < end)) {
+                        interval.start = Math.min(interval.start, start);
+                        interval.end = Math.max(interval.end, end);
+                        hasChanged = true;
+                    }
+                }
+            }
+        } while (hasChanged);
+        if (loopEnd < code.size()) {
+            BitSet live = getLiveAt(loopEnd);
+            for (Interval interval : used) {
+                if (live.get(interval.symbol)) {
+                    interval.end = loopEnd;
+                }
+            }
+        }
+    }
+
+    private void scan(ArrayList<Interval> used) {
+        used.sort(Comparator.comparingInt(interval -> interval.start));
+        ArrayList<Interval> active = new ArrayList<>();
+        boolean[] isFree = new boolean[REGISTERS.length];
+        Arrays.fill(isFree, true);
+        for (Interval interval : used) {
+            if (interval.weight == 0) {
+                continue;
+            }
+            for (int i = active.size() - 1; i >= 0; i--) {
+                if (active.get(i).end < interval.start) {
+                    isFree[active.get(i).register] = true;
+                    active.remove(i);
+                }
+            }
+            int register = 0;
+            while (register < isFree.length && !isFree[register]) {
+                register++;
+            }
+            if (register < isFree.length) {
+                isFree[register] = false;
+                interval.register = register;
+                active.add(interval);
+                continue;
+            }
+            Interval lightest = interval;
+            for (Interval other : active) {
+                if (other.weight < lightest.weight) {
+                    lightest = other;
+                }
+            }
+            if (lightest != interval) {
+                interval.register = lightest.register;
+                lightest.register = -1;
+                active.remove(lightest);
+                active.add(interval);
+            }
+        }
+    }
+
+    private void rewrite(Interval[] intervals, ArrayList<Interval> used, int loopStart, int loopEnd) {
+        BitSet liveAtStart = getLiveAt(loopStart);
+        BitSet liveAtEnd = loopEnd < code.size() ? getLiveAt(loopEnd) : new BitSet();
+        for (Interval interval : used) {
+            if (interval.register == -1) {
+                continue;
+            }
+            allocatedCount++;
+            int register = ThreeAddressCode.register(interval.register);
+            int symbol = ThreeAddressCode.symbol(interval.symbol);
+            if (interval.start == loopStart && liveAtStart.get(interval.symbol)) {
+                insertions.add(new ThreeAddressCode.Insertion(loopStart, Opcode.MOVE, Token.INT, register, symbol, ThreeAddressCode.NONE));
+            }
+            if (interval.end == loopEnd && liveAtEnd.get(interval.symbol)) {
+                insertions.add(new ThreeAddressCode.Insertion(loopEnd + 1, Opcode.MOVE, Token.INT, symbol, register, ThreeAddressCode.NONE));
+            }
+        }
+        for (int i = loopStart; i < loopEnd; i++) {
+            Opcode opcode = code.getOpcode(i);
+            if (opcode == Opcode.PRINT) {
+                Interval interval = intervals[ThreeAddressCode.getIndex(code.getLeft(i))];
+                if (interval != null && interval.register != -1) {
+                    insertions.add(new ThreeAddressCode.Insertion(i, Opcode.MOVE, Token.INT,
+                            code.getLeft(i), ThreeAddressCode.register(interval.register), ThreeAddressCode.NONE));
+                }
+                continue;
+            }
+            if (opcode != Opcode.MOVE && opcode != Opcode.ADD && opcode != Opcode.SUB) {
+                continue;
+            }
+            code.set(i, opcode, code.getType(i), getLocation(intervals, code.getResult(i)),
+                    getLocation(intervals, code.getLeft(i)), getLocation(intervals, code.getRight(i)));
+        }
+    }
+
+    private static int getLocation(Interval[] intervals, int operand) {
+        if (!ThreeAddressCode.isSymbol(operand)) {
+            return operand;
+        }
+        Interval interval = intervals[ThreeAddressCode.getIndex(operand)];
+        return interval == null || interval.register == -1 ? operand : ThreeAddressCode.register(interval.register);
+    }
+
+    // What is live at a label
+    private BitSet getLiveAt(int instruction) {
+        int block = code.getLabelBlock(code.getResult(instruction));
+        return liveness.getLiveIn(block);
+    }
+}
@@ -0,0 +1,421 @@
+package CodeGenerators;
+
+import Utilities.Symbols;
+import Utilities.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// The program as three-address instructions in parallel arrays. Operands are told apart by their lowest bits, and
+// temporaries 0 and 1 are the scratch registers AX and BX, or AL and BL for booleans
+public class ThreeAddressCode {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final Opcode[] OPCODES = Opcode.values();
+    private static final Token[] TOKENS = Token.values();
+    public static final int NONE = -1;
+    public static final int TEMPORARY_COUNT = 2;
+    private static final int SYMBOL = 0, TEMPORARY = 1, CONSTANT = 2, REGISTER = 3;
+    private final Symbols symbols;
+    private final String programName;
+    private byte[] opcodes, types;
+    private int[] results, lefts, rights;
+    private int[] constants;
+    private final ArrayList<String> strings;
+    private byte[] labelKinds;
+    private int[] labelNumbers;
+    private int[] blockStarts, labelBlocks;
+    private int size, constantCount, labelCount, blockCount;
+
+    public enum LabelKind {
+        WHILE("while"), WHILE_CONTINUE("while_continue"), IF_CONTINUE("if_continue");
+
+        private final String prefix;
+
+        LabelKind(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    private static final LabelKind[] LABEL_KINDS = LabelKind.values();
+
+    // An instruction to put before the one at the position given
+    public record Insertion(int position, Opcode opcode, Token type, int result, int left, int right) {
+    }
+
+    public ThreeAddressCode(Symbols symbols, String programName) {
+        this.symbols = symbols;
+        this.programName = programName;
+        opcodes = new byte[INITIAL_CAPACITY];
+        types = new byte[INITIAL_CAPACITY];
+        results = new int[INITIAL_CAPACITY];
+        lefts = new int[INITIAL_CAPACITY];
+        rights = new int[INITIAL_CAPACITY];
+        constants = new int[INITIAL_CAPACITY];
+        strings = new ArrayList<>();
+        labelKinds = new byte[INITIAL_CAPACITY];
+        labelNumbers = new int[INITIAL_CAPACITY];
+        blockStarts = new int[0];
+        labelBlocks = new int[0];
+        size = 0;
+        constantCount = 0;
+        labelCount = 0;
+        blockCount = 0;
+    }
+
+    // The type is null for labels and unconditional jumps
+    public int add(Opcode opcode, Token type, int result, int left, int right) {
+        if (size == opcodes.length) {
+            opcodes = Arrays.copyOf(opcodes, size * 2);
+            types = Arrays.copyOf(types, size * 2);
+            results = Arrays.copyOf(results, size * 2);
+            lefts = Arrays.copyOf(lefts, size * 2);
+            rights = Arrays.copyOf(rights, size * 2);
+        }
+        opcodes[size] = (byte) opcode.ordinal();
+        types[size] = (byte) (type == null ? -1 : type.ordinal());
+        results[size] = result;
+        lefts[size] = left;
+        rights[size] = right;
+        return size++;
+    }
+
+    public void set(int instruction, Opcode opcode, Token type, int result, int left, int right) {
+        opcodes[instruction] = (byte) opcode.ordinal();
+        types[instruction] = (byte) (type == null ? -1 : type.ordinal());
+        results[instruction] = result;
+        lefts[instruction] = left;
+        rights[instruction] = right;
+    }
+
+    // Takes out the instructions marked as removed, keeping the order of the rest, and finds the blocks again
+    public void remove(boolean[] removed) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (removed[i]) {
+                continue;
+            }
+            opcodes[count] = opcodes[i];
+            types[count] = types[i];
+            results[count] = results[i];
+            lefts[count] = lefts[i];
+            rights[count] = rights[i];
+            count++;
+        }
+        size = count;
+        findBasicBlocks();
+    }
+
+    // Puts the instructions, ordered by position, before their positions in one pass
+    public void insert(List<Insertion> insertions) {
+        int newSize = size + insertions.size();
+        byte[] newOpcodes = new byte[Math.max(newSize, INITIAL_CAPACITY)], newTypes = new byte[newOpcodes.length];
+        int[] newResults = new int[newOpcodes.length], newLefts = new int[newOpcodes.length];
+        int[] newRights = new int[newOpcodes.length];
+        int count = 0, next = 0;
+        for (int i = 0; i <= size; i++) {
+            while (next < insertions.size() && insertions.get(next).position() == i) {
+                Insertion insertion = insertions.get(next++);
+                newOpcodes[count] = (byte) insertion.opcode().ordinal();
+                newTypes[count] = (byte) (insertion.type() == null ? -1 : insertion.type().ordinal());
+                newResults[count] = insertion.result();
+                newLefts[count] = insertion.left();
+                newRights[count] = insertion.right();
+                count++;
+            }
+            if (i == size) {
+                break;
+            }
+            newOpcodes[count] = opcodes[i];
+            newTypes[count] = types[i];
+            newResults[count] = results[i];
+            newLefts[count] = lefts[i];
+            newRights[count] = rights[i];
+            count++;
+        }
+        opcodes = newOpcodes;
+        types = newTypes;
+        results = newResults;
+        lefts = newLefts;
+        rights = newRights;
+        size = newSize;
+        findBasicBlocks();
+    }
+
+    public static int symbol(int symbol) {
+        return symbol << 2 | SYMBOL;
+    }
+
+    public static int temporary(int temporary) {
+        return temporary << 2 | TEMPORARY;
+    }
+
+    public static int register(int register) {
+        return register << 2 | REGISTER;
+    }
+
+    public int constant(int value) {
+        if (constantCount == constants.length) {
+            constants = Arrays.copyOf(constants, constantCount * 2);
+        }
+        constants[constantCount] = value;
+        return constantCount++ << 2 | CONSTANT;
+    }
+
+    public static boolean isSymbol(int operand) {
+        return operand != NONE && (operand & 3) == SYMBOL;
+    }
+
+    public static boolean isTemporary(int operand) {
+        return operand != NONE && (operand & 3) == TEMPORARY;
+    }
+
+    public static boolean isConstant(int operand) {
+        return operand != NONE && (operand & 3) == CONSTANT;
+    }
+
+    public static boolean isRegister(int operand) {
+        return operand != NONE && (operand & 3) == REGISTER;
+    }
+
+    // The symbol id of a symbol or the number of a temporary or register
+    public static int getIndex(int operand) {
+        return operand >>> 2;
+    }
+
+    public int getConstant(int operand) {
+        return constants[operand >>> 2];
+    }
+
+    // The index to keep as the left operand of a STRING instruction
+    public int addString(String value) {
+        strings.add(value);
+        return strings.size() - 1;
+    }
+
+    public String getString(int instruction) {
+        return strings.get(lefts[instruction]);
+    }
+
+    public int newLabel(LabelKind kind, int number) {
+        if (labelCount == labelKinds.length) {
+            labelKinds = Arrays.copyOf(labelKinds, labelCount * 2);
+            labelNumbers = Arrays.copyOf(labelNumbers, labelCount * 2);
+        }
+        labelKinds[labelCount] = (byte) kind.ordinal();
+        labelNumbers[labelCount] = number;
+        return labelCount++;
+    }
+
+    public LabelKind getLabelKind(int label) {
+        return LABEL_KINDS[labelKinds[label]];
+    }
+
+    // The two labels of a loop share their number
+    public int getLabelNumber(int label) {
+        return labelNumbers[label];
+    }
+
+    public String getLabelName(int label) {
+        return getLabelKind(label).prefix + labelNumbers[label];
+    }
+
+    public int getLabelCount() {
+        return labelCount;
+    }
+
+    // A block starts at the first instruction, at every label and after every jump, and runs until the next one starts
+    public void findBasicBlocks() {
+        blockStarts = new int[Math.max(size, 1)];
+        labelBlocks = new int[labelCount];
+        Arrays.fill(labelBlocks, -1);
+        blockCount = 0;
+        for (int i = 0; i < size; i++) {
+            boolean isLeader = i == 0 || getOpcode(i) == Opcode.LABEL || getOpcode(i - 1).isJump();
+            if (isLeader) {
+                blockStarts[blockCount++] = i;
+            }
+            if (getOpcode(i) == Opcode.LABEL) {
+                labelBlocks[results[i]] = blockCount - 1;
+            }
+        }
+        blockStarts = Arrays.copyOf(blockStarts, blockCount);
+    }
+
+    // The block a label starts, or -1 for a label that is not placed
+    public int getLabelBlock(int label) {
+        return labelBlocks[label];
+    }
+
+    // The additions, subtractions and compares that may set the flags a condition on strings jumps on, which the
+    // passes have to keep as they are
+    public boolean[] findFlagsReadByStrings() {
+        boolean[] isRead = new boolean[size];
+        int[] predecessorStarts = new int[blockCount + 1];
+        for (int block = 0; block < blockCount; block++) {
+            for (int successor : getSuccessors(block)) {
+                if (successor != -1) {
+                    predecessorStarts[successor + 1]++;
+                }
+            }
+        }
+        for (int block = 0; block < blockCount; block++) {
+            predecessorStarts[block + 1] += predecessorStarts[block];
+        }
+        int[] predecessors = new int[predecessorStarts[blockCount]], counts = new int[blockCount];
+        for (int block = 0; block < blockCount; block++) {
+            for (int successor : getSuccessors(block)) {
+                if (successor != -1) {
+                    predecessors[predecessorStarts[successor] + counts[successor]++] = block;
+                }
+            }
+        }
+        boolean[] isVisited = new boolean[blockCount];
+        int[] pending = new int[blockCount];
+        int pendingCount = 0;
+        for (int block = 0; block < blockCount; block++) {
+            for (int i = getBlockStart(block); i < getBlockEnd(block); i++) {
+                if (getOpcode(i).isConditionalJump() && getType(i) == Token.STRING && !markFlagsSetter(isRead, block, i)) {
+                    for (int j = predecessorStarts[block]; j < predecessorStarts[block + 1]; j++) {
+                        if (!isVisited[predecessors[j]]) {
+                            isVisited[predecessors[j]] = true;
+                            pending[pendingCount++] = predecessors[j];
+                        }
+                    }
+                }
+            }
+        }
+        while (pendingCount > 0) {
+            int block = pending[--pendingCount];
+            if (markFlagsSetter(isRead, block, getBlockEnd(block))) {
+                continue;
+            }
+            for (int j = predecessorStarts[block]; j < predecessorStarts[block + 1]; j++) {
+                if (!isVisited[predecessors[j]]) {
+                    isVisited[predecessors[j]] = true;
+                    pending[pendingCount++] = predecessors[j];
+                }
+            }
+        }
+        return isRead;
+    }
+
+    // Marks the last instruction of the block before the end given that sets the flags, and tells whether there is one
+    private boolean markFlagsSetter(boolean[] isRead, int block, int end) {
+        for (int i = end - 1; i >= getBlockStart(block); i--) {
+            Opcode opcode = getOpcode(i);
+            if (opcode == Opcode.ADD || opcode == Opcode.SUB || opcode.isConditionalJump() && getType(i) != Token.STRING) {
+                isRead[i] = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int[] getSuccessors(int block) {
+        Opcode opcode = getOpcode(getBlockEnd(block) - 1);
+        return new int[]{
+                opcode == Opcode.JUMP || block + 1 == blockCount ? -1 : block + 1,
+                opcode.isJump() ? labelBlocks[results[getBlockEnd(block) - 1]] : -1
+        };
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public int getBlockStart(int block) {
+        return blockStarts[block];
+    }
+
+    public int getBlockEnd(int block) {
+        return block + 1 < blockCount ? blockStarts[block + 1] : size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Opcode getOpcode(int instruction) {
+        return OPCODES[opcodes[instruction]];
+    }
+
+    public Token getType(int instruction) {
+        return types[instruction] == -1 ? null : TOKENS[types[instruction]];
+    }
+
+    public int getResult(int instruction) {
+        return results[instruction];
+    }
+
+    public int getLeft(int instruction) {
+        return lefts[instruction];
+    }
+
+    public int getRight(int instruction) {
+        return rights[instruction];
+    }
+
+    public Symbols getSymbols() {
+        return symbols;
+    }
+
+    public String getProgramName() {
+        return programName;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int block = 0; block < blockCount; block++) {
+            text.append("B").append(block).append(":\n");
+            for (int i = getBlockStart(block); i < getBlockEnd(block); i++) {
+                text.append("\t").append(getInstructionText(i)).append("\n");
+            }
+        }
+        return text.toString();
+    }
+
+    private String getInstructionText(int instruction) {
+        Opcode opcode = getOpcode(instruction);
+        if (opcode == Opcode.LABEL) {
+            return getLabelName(results[instruction]) + ":";
+        }
+        if (opcode.isJump()) {
+            String condition = opcode.isConditionalJump()
+                    ? " " + getOperandText(lefts[instruction]) + ", " + getOperandText(rights[instruction])
+                    : "";
+            return opcode + condition + " -> " + getLabelName(results[instruction]);
+        }
+        if (opcode == Opcode.STRING) {
+            return getOperandText(results[instruction]) + " = \"" + getString(instruction) + "\"";
+        }
+        if (opcode == Opcode.PRINT) {
+            return "print " + getOperandText(lefts[instruction]);
+        }
+        if (opcode == Opcode.SCAN) {
+            return "scan " + getOperandText(results[instruction]);
+        }
+        if (opcode == Opcode.MOVE) {
+            return getOperandText(results[instruction]) + " = " + getOperandText(lefts[instruction]);
+        }
+        return getOperandText(results[instruction]) + " = " + getOperandText(lefts[instruction])
+                + (opcode == Opcode.ADD ? " + " : " - ") + getOperandText(rights[instruction]);
+    }
+
+    private String getOperandText(int operand) {
+        if (operand == NONE) {
+            return "_";
+        }
+        if (isSymbol(operand)) {
+            return symbols.getFullId(getIndex(operand));
+        }
+        if (isTemporary(operand)) {
+            return "t" + getIndex(operand);
+        }
+        if (isRegister(operand)) {
+            return "r" + getIndex(operand);
+        }
+        return Integer.toString(getConstant(operand));
+    }
+}
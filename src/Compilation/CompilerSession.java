@@ -0,0 +1,172 @@
+package Compilation;
+
+import Caching.CompilationCache;
+import CodeGenerators.ConstantFolding;
+import CodeGenerators.DeadCodeElimination;
+import CodeGenerators.IntermediateCodeGenerator;
+import CodeGenerators.Lowering;
+import CodeGenerators.ObjectCodeGenerator;
+import CodeGenerators.RegisterAllocation;
+import CodeGenerators.ThreeAddressCode;
+import LexicalAnalysis.Lexer;
+import LexicalAnalysis.ReaderTokenStream;
+import SemanticAnalysis.SemanticAnalyzer;
+import SyntacticAnalysis.Parser;
+import Utilities.Diagnostic;
+
+import java.io.Reader;
+import java.util.List;
+
+// Compiles one source at a time; sessions on different threads share nothing but the cache
+public class CompilerSession {
+    private final Lexer lexer;
+    private final Parser parser;
+    private final SemanticAnalyzer semanticAnalyzer;
+    private final Lowering lowering;
+    private final ConstantFolding constantFolding;
+    private final DeadCodeElimination deadCodeElimination;
+    private final RegisterAllocation registerAllocation;
+    private final IntermediateCodeGenerator intermediateCodeGenerator;
+    private final ObjectCodeGenerator objectCodeGenerator;
+    private final CompilationCache compilationCache;
+    private boolean optimizing;
+
+    public record Result(boolean scanned, boolean parsed, boolean analyzed, List<Diagnostic> errors,
+                         String intermediateCode, String objectCode) {
+    }
+
+    public CompilerSession() {
+        this(null);
+    }
+
+    public CompilerSession(CompilationCache compilationCache) {
+        lexer = new Lexer();
+        parser = new Parser();
+        semanticAnalyzer = new SemanticAnalyzer();
+        lowering = new Lowering();
+        constantFolding = new ConstantFolding();
+        deadCodeElimination = new DeadCodeElimination();
+        registerAllocation = new RegisterAllocation();
+        intermediateCodeGenerator = new IntermediateCodeGenerator();
+        objectCodeGenerator = new ObjectCodeGenerator();
+        this.compilationCache = compilationCache;
+        optimizing = true;
+        intermediateCodeGenerator.setOptimizing(true);
+        objectCodeGenerator.setOptimizing(true);
+    }
+
+    public Result compile(CharSequence source) {
+        boolean scanned, parsed = false, analyzed = false;
+        if (compilationCache != null) {
+            CompilationCache.Result result = compilationCache.compile(source, lexer, parser, semanticAnalyzer);
+            scanned = result.scanned();
+            parsed = result.parsed();
+            analyzed = result.analyzed();
+        }
+        else {
+            scanned = lexer.scan(source);
+            if (scanned) {
+                parser.initialize(lexer.getTokenStream());
+                parsed = parser.parse();
+                semanticAnalyzer.initialize(parser.getSyntaxTree());
+                analyzed = semanticAnalyzer.analyze();
+            }
+        }
+        if (!scanned) {
+            return new Result(false, false, false, List.of(), null, null);
+        }
+        return generate(parsed, analyzed);
+    }
+
+    // Lexes the source while it is parsed, without the cache
+    public Result compile(Reader source) {
+        ReaderTokenStream tokenStream = new ReaderTokenStream(source);
+        parser.initialize(tokenStream);
+        boolean parsed = parser.parse();
+        tokenStream.skipRemaining();
+        if (tokenStream.getErrorCount() > 0) {
+            return new Result(false, false, false, List.of(), null, null);
+        }
+        semanticAnalyzer.initialize(parser.getSyntaxTree());
+        return generate(parsed, semanticAnalyzer.analyze());
+    }
+
+    private Result generate(boolean parsed, boolean analyzed) {
+        List<Diagnostic> errors = List.copyOf(parser.getErrors());
+        if (!parsed || !analyzed) {
+            return new Result(true, parsed, analyzed, errors, null, null);
+        }
+        ThreeAddressCode threeAddressCode = lower();
+        intermediateCodeGenerator.initialize(threeAddressCode);
+        String intermediateCode = intermediateCodeGenerator.getIntermediateCode();
+        objectCodeGenerator.initialize(threeAddressCode);
+        String objectCode = objectCodeGenerator.getObjectCode();
+        return new Result(true, true, true, errors, intermediateCode, objectCode);
+    }
+
+    // The three-address code of the last source analyzed, with the optimizations applied when they are on
+    public ThreeAddressCode lower() {
+        lowering.initialize(parser.getSyntaxTree(), semanticAnalyzer.getSymbols());
+        ThreeAddressCode threeAddressCode = lowering.lower();
+        if (optimizing) {
+            constantFolding.initialize(threeAddressCode);
+            constantFolding.fold();
+            deadCodeElimination.initialize(threeAddressCode);
+            deadCodeElimination.eliminate();
+            registerAllocation.initialize(threeAddressCode);
+            registerAllocation.allocate();
+        }
+        return threeAddressCode;
+    }
+
+    // Turns the passes over the three-address code and the peephole of both generators on or off
+    public void setOptimizing(boolean optimizing) {
+        this.optimizing = optimizing;
+        intermediateCodeGenerator.setOptimizing(optimizing);
+        objectCodeGenerator.setOptimizing(optimizing);
+    }
+
+    public boolean isOptimizing() {
+        return optimizing;
+    }
+
+    public Lexer getLexer() {
+        return lexer;
+    }
+
+    public Parser getParser() {
+        return parser;
+    }
+
+    public SemanticAnalyzer getSemanticAnalyzer() {
+        return semanticAnalyzer;
+    }
+
+    public Lowering getLowering() {
+        return lowering;
+    }
+
+    public ConstantFolding getConstantFolding() {
+        return constantFolding;
+    }
+
+    public DeadCodeElimination getDeadCodeElimination() {
+        return deadCodeElimination;
+    }
+
+    public RegisterAllocation getRegisterAllocation() {
+        return registerAllocation;
+    }
+
+    public IntermediateCodeGenerator getIntermediateCodeGenerator() {
+        return intermediateCodeGenerator;
+    }
+
+    public ObjectCodeGenerator getObjectCodeGenerator() {
+        return objectCodeGenerator;
+    }
+
+    public CompilationCache getCompilationCache() {
+        return compilationCache;
+    }
+}
@@ -1,42 +1,59 @@
+import Caching.CompilationCache;
 import CodeGenerators.IntermediateCodeGenerator;
 import CodeGenerators.ObjectCodeGenerator;
+import CodeGenerators.ThreeAddressCode;
+import Compilation.CompilerSession;
 import LexicalAnalysis.Lexer;
+import LexicalAnalysis.MappedSource;
+import LexicalAnalysis.TokenEdit;
 import SemanticAnalysis.SemanticAnalyzer;
 import Utilities.Token;
 import SyntacticAnalysis.Parser;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.BitSet;
+import java.util.List;
 
-public class Controller implements ActionListener, KeyListener {
+public class Controller implements ActionListener, KeyListener, DocumentListener {
     private final GUI userInterface;
     private final Lexer lexer;
     private final Parser parser;
     private final SemanticAnalyzer semanticAnalyzer;
+    private final CompilerSession session;
     private final IntermediateCodeGenerator intermediateCodeGenerator;
     private final ObjectCodeGenerator objectCodeGenerator;
+    private final CompilationCache compilationCache;
+    private CompilationCache.Result compilationResult;
+    private ThreeAddressCode threeAddressCode;
+    private DocumentText documentText;
 
-    public Controller(GUI userInterface, Lexer lexer, Parser parser, SemanticAnalyzer semanticAnalyzer, IntermediateCodeGenerator intermediateCodeGenerator, ObjectCodeGenerator objectCodeGenerator) {
+    public Controller(GUI userInterface, CompilerSession session) {
         this.userInterface = userInterface;
-        this.lexer = lexer;
-        this.parser = parser;
-        this.semanticAnalyzer = semanticAnalyzer;
-        this.intermediateCodeGenerator = intermediateCodeGenerator;
-        this.objectCodeGenerator = objectCodeGenerator;
+        this.session = session;
+        lexer = session.getLexer();
+        parser = session.getParser();
+        semanticAnalyzer = session.getSemanticAnalyzer();
+        intermediateCodeGenerator = session.getIntermediateCodeGenerator();
+        objectCodeGenerator = session.getObjectCodeGenerator();
+        compilationCache = session.getCompilationCache();
         setListeners();
     }
 
     private void setListeners() {
         userInterface.getCodeArea().addKeyListener(this);
+        userInterface.getCodeArea().getDocument().addDocumentListener(this);
         userInterface.getScannerButton().addActionListener(this);
         userInterface.getParserButton().addActionListener(this);
         userInterface.getSemanticButton().addActionListener(this);
@@ -49,11 +66,22 @@ public class Controller implements ActionListener, KeyListener {
     @Override
     public void actionPerformed(ActionEvent e) {
         if (e.getSource() == userInterface.getScannerButton()) {
-            String input = userInterface.getCodeArea().getText();
-            boolean scanResult = lexer.scan(input);
-            ArrayList<String> strings = lexer.getStrings();
-            ArrayList<Token> tokens = lexer.getTokens();
-            Boolean[] reservedWords = lexer.checkReservedWords(tokens);
+            boolean scanResult;
+            if (lexer.isScanned()) {
+                scanResult = !lexer.hasErrors();
+            }
+            else if (compilationCache.isEnabled()) {
+                // The cache also restores the parser and the semantic analyzer, so their buttons only show the results
+                compilationResult = compilationCache.compile(userInterface.getCodeArea().getText(), lexer, parser, semanticAnalyzer);
+                lexer.clearEdit();
+                scanResult = compilationResult.scanned();
+            }
+            else {
+                scanResult = lexer.scan(userInterface.getCodeArea().getText());
+            }
+            List<String> strings = lexer.getStrings();
+            List<Token> tokens = lexer.getTokens();
+            BitSet reservedWords = lexer.getReservedWords();
             userInterface.showTokens(strings, tokens, reservedWords);
             userInterface.setParserButtonState(scanResult);
             userInterface.clearParserResult();
@@ -63,26 +91,42 @@ public class Controller implements ActionListener, KeyListener {
         }
 
         if (e.getSource() == userInterface.getParserButton()) {
-            parser.initialize(lexer.getTokens(), lexer.getStrings());
-            boolean parserResult = parser.parse();
-            userInterface.showParserResult(parserResult);
-            userInterface.setSemanticButtonState(parserResult);
+            boolean parserResult;
+            if (compilationResult != null) {
+                parserResult = compilationResult.parsed();
+            }
+            else {
+                parser.initialize(lexer.getTokenStream());
+                TokenEdit edit = lexer.getEdit();
+                parserResult = edit != null ? parser.reparse(edit) : parser.parse();
+                lexer.clearEdit();
+            }
+            userInterface.showParserResult(parserResult, parser.getErrors());
+            userInterface.setSemanticButtonState(true);
             userInterface.clearSemanticResult();
             userInterface.clearIntermediateCode();
             userInterface.clearObjectCode();
         }
 
         if (e.getSource() == userInterface.getSemanticButton()) {
-            semanticAnalyzer.initialize(parser.getSyntaxTree());
-            boolean semanticResult = semanticAnalyzer.analyze();
+            boolean semanticResult;
+            if (compilationResult != null) {
+                semanticResult = compilationResult.analyzed();
+            }
+            else {
+                semanticAnalyzer.initialize(parser.getSyntaxTree());
+                semanticResult = semanticAnalyzer.analyze();
+            }
             userInterface.showSemanticResult(semanticResult);
-            userInterface.setIntermediateButtonState(semanticResult);
+            userInterface.setIntermediateButtonState(semanticResult && parser.getErrors().isEmpty());
             userInterface.clearIntermediateCode();
             userInterface.clearObjectCode();
         }
 
         if (e.getSource() == userInterface.getIntermediateButton()) {
-            intermediateCodeGenerator.initialize(parser.getSyntaxTree(), semanticAnalyzer.getSymbolDataMap());
+            // The object code is generated from the same three-address code when its button is pressed
+            threeAddressCode = session.lower();
+            intermediateCodeGenerator.initialize(threeAddressCode);
             String intermediateCode = intermediateCodeGenerator.getIntermediateCode();
             userInterface.showIntermediateCode(intermediateCode);
             userInterface.setObjectButtonState(true);
@@ -90,7 +134,7 @@ public class Controller implements ActionListener, KeyListener {
         }
 
         if (e.getSource() == userInterface.getObjectButton()) {
-            objectCodeGenerator.initialize(parser.getSyntaxTree(), semanticAnalyzer.getSymbolDataMap());
+            objectCodeGenerator.initialize(threeAddressCode);
             String objectCode = objectCodeGenerator.getObjectCode();
             userInterface.showObjectCode(objectCode);
         }
@@ -100,12 +144,10 @@ public class Controller implements ActionListener, KeyListener {
             if (option == JFileChooser.APPROVE_OPTION) {
                 File file = userInterface.getFileChooser().getSelectedFile();
                 try {
-                    Scanner sc = new Scanner(file);
-                    StringBuilder stringBuilder = new StringBuilder();
-                    while (sc.hasNextLine()) {
-                        stringBuilder.append(sc.nextLine()).append("\n");
-                    }
-                    userInterface.getCodeArea().setText(stringBuilder.toString());
+                    // Scanning the opened file from scratch lets the cache find it if it was compiled before
+                    lexer.clear();
+                    compilationResult = null;
+                    userInterface.getCodeArea().setText(readCode(file));
                     userInterface.clearTokens();
                     userInterface.clearParserResult();
                     userInterface.clearSemanticResult();
@@ -115,8 +157,8 @@ public class Controller implements ActionListener, KeyListener {
                     userInterface.setSemanticButtonState(false);
                     userInterface.setIntermediateButtonState(false);
                     userInterface.setObjectButtonState(false);
-                } catch (FileNotFoundException ex) {
-                    userInterface.showWarning("The file was not found");
+                } catch (IOException ex) {
+                    userInterface.showWarning("The file could not be read");
                 }
             }
         }
@@ -141,6 +183,107 @@ public class Controller implements ActionListener, KeyListener {
         }
     }
 
+    private String readCode(File file) throws IOException {
+        CharSequence source = MappedSource.open(file.toPath());
+        StringBuilder stringBuilder = new StringBuilder(source.length() + 1);
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '\r') {
+                if (i + 1 < source.length() && source.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                c = '\n';
+            }
+            else if (c == '\u2028' || c == '\u2029' || c == '\u0085') {
+                c = '\n';
+            }
+            stringBuilder.append(c);
+        }
+        // Every line ends with a line break, as the editor always did when reading line by line
+        if (!stringBuilder.isEmpty() && stringBuilder.charAt(stringBuilder.length() - 1) != '\n') {
+            stringBuilder.append('\n');
+        }
+        return stringBuilder.toString();
+    }
+
+    private void updateTokens(int offset, int removedLength, int insertedLength) {
+        compilationResult = null;
+        if (!lexer.isScanned()) {
+            return;
+        }
+        if (documentText == null) {
+            documentText = new DocumentText(userInterface.getCodeArea().getDocument());
+        }
+        documentText.reset();
+        lexer.update(documentText, offset, removedLength, insertedLength);
+    }
+
+    // The text of the document read where it is, one piece at a time, instead of copied whole on every edit
+    private static class DocumentText implements CharSequence {
+        private final Document document;
+        private final Segment segment;
+        private int segmentStart;
+
+        private DocumentText(Document document) {
+            this.document = document;
+            segment = new Segment();
+            segment.setPartialReturn(true);
+        }
+
+        // The document changed, so the piece read before may not be in it any more
+        private void reset() {
+            segmentStart = 0;
+            segment.count = 0;
+        }
+
+        @Override
+        public int length() {
+            return document.getLength();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < segmentStart || index >= segmentStart + segment.count) {
+                try {
+                    document.getText(index, document.getLength() - index, segment);
+                } catch (BadLocationException ex) {
+                    throw new IndexOutOfBoundsException(index);
+                }
+                segmentStart = index;
+            }
+            return segment.array[segment.offset + index - segmentStart];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            try {
+                return document.getText(start, end - start);
+            } catch (BadLocationException ex) {
+                throw new IndexOutOfBoundsException(start);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        updateTokens(e.getOffset(), 0, e.getLength());
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        updateTokens(e.getOffset(), e.getLength(), 0);
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+
+    }
+
     @Override
     public void keyTyped(KeyEvent e) {
         userInterface.setParserButtonState(false);
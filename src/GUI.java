@@ -1,8 +1,10 @@
+import Utilities.Diagnostic;
 import Utilities.Token;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 public class GUI extends JFrame {
     private JTextArea codeArea, tokensArea, parserArea, semanticArea, intermediateArea, objectArea;
@@ -174,19 +176,28 @@ public class GUI extends JFrame {
         add(objectButton);
     }
 
-    public void showTokens(ArrayList<String> strings, ArrayList<Token> tokens, Boolean[] reservedWords) {
+    public void showTokens(List<String> strings, List<Token> tokens, BitSet reservedWords) {
         StringBuilder stringBuilder = new StringBuilder();
         for (int i = 0; i < tokens.size(); i++) {
             stringBuilder.append(strings.get(i)).append(" , ")
-                    .append(reservedWords[i] ? Token.RW + " " : "")
+                    .append(reservedWords.get(i) ? Token.RW + " " : "")
                     .append(tokens.get(i))
                     .append("\n");
         }
         tokensArea.setText(stringBuilder.toString());
     }
 
-    public void showParserResult(boolean result) {
-        parserArea.setText(result ? "Program OK" : "Syntax error");
+    public void showParserResult(boolean result, List<Diagnostic> errors) {
+        if (result) {
+            parserArea.setText("Program OK");
+            return;
+        }
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append(errors.size()).append(errors.size() == 1 ? " syntax error" : " syntax errors").append("\n");
+        for (Diagnostic error : errors) {
+            stringBuilder.append("Token ").append(error.position()).append(": ").append(error.message()).append("\n");
+        }
+        parserArea.setText(stringBuilder.toString());
     }
 
     public void showSemanticResult(boolean result) {
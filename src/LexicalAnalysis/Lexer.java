@@ -1,206 +1,548 @@
 package LexicalAnalysis;
 
+import Utilities.IdentifierPool;
 import Utilities.Token;
+import Utilities.TokenClass;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 public class Lexer {
-    private static HashSet<Token> reservedWordsSet;
-    private static HashMap<String, Token> reservedWordsMap;
-    private ArrayList<String> strings;
-    private ArrayList<Token> tokens;
-
-    public Lexer() {
-        if (reservedWordsSet == null) {
-            reservedWordsSet = new HashSet<>();
-            reservedWordsSet.add(Token.CODE);
-            reservedWordsSet.add(Token.SCAN);
-            reservedWordsSet.add(Token.PRINT);
-            reservedWordsSet.add(Token.IF);
-            reservedWordsSet.add(Token.WHILE);
-            reservedWordsSet.add(Token.INT);
-            reservedWordsSet.add(Token.BOOLEAN);
-            reservedWordsSet.add(Token.TRUE);
-            reservedWordsSet.add(Token.FALSE);
-        }
-
-        if (reservedWordsMap == null) {
-            reservedWordsMap = new HashMap<>();
-            reservedWordsMap.put("code", Token.CODE);
-            reservedWordsMap.put("scan", Token.SCAN);
-            reservedWordsMap.put("print", Token.PRINT);
-            reservedWordsMap.put("if", Token.IF);
-            reservedWordsMap.put("while", Token.WHILE);
-            reservedWordsMap.put("int", Token.INT);
-            reservedWordsMap.put("boolean", Token.BOOLEAN);
-            reservedWordsMap.put("string", Token.STRING);
-            reservedWordsMap.put("true", Token.TRUE);
-            reservedWordsMap.put("false", Token.FALSE);
-        }
-    }
-
-    public boolean scan(String input) {
-        boolean result = true, openQuotes = false;
-        strings = new ArrayList<>();
-        tokens = new ArrayList<>();
-        StringBuilder stringBuilder = new StringBuilder();
-        for (int i = 0; i < input.length(); i++) {
-            Character c = input.charAt(i);
-            if (c == '\"') {
-                if (openQuotes) {
-                    openQuotes = false;
-                    strings.removeLast();
-                    tokens.removeLast();
-                    String string = stringBuilder.toString();
-                    strings.add(string);
-                    tokens.add(Token.STRING_VALUE);
-                    stringBuilder = new StringBuilder();
-                }
-                else {
-                    openQuotes = true;
-                    strings.add("\"");
-                    tokens.add(Token.QUOTES);
-                }
-                continue;
+    private static final Token[] TOKEN_VALUES = Token.values();
+
+    private static final byte OTHER = 0, SPACE = 1, LETTER = 2, DIGIT = 3, QUOTE = 4,
+            OP_CURLY = 5, CL_CURLY = 6, OP_PAREN = 7, CL_PAREN = 8, PLUS = 9, MINUS = 10,
+            SEMICOLON = 11, EQUAL = 12, LESS = 13, GREATER = 14, BANG = 15;
+    private static final int CHAR_CLASS_COUNT = 16;
+
+    static final int STOP = -1, START = 0;
+    private static final int S_SPACE = 1, S_IDENTIFIER = 2, S_NUMBER = 3,
+            S_STRING = 4, S_STRING_END = 5, S_OP_CURLY = 6, S_CL_CURLY = 7, S_OP_PAREN = 8,
+            S_CL_PAREN = 9, S_PLUS = 10, S_MINUS = 11, S_SEMICOLON = 12, S_ASSIGN = 13,
+            S_EQUALS = 14, S_LESS = 15, S_LESS_EQ = 16, S_GREATER = 17, S_GREATER_EQ = 18,
+            S_BANG = 19, S_DIFFERENT = 20, S_ERROR = 21;
+    private static final int STATE_COUNT = 22;
+
+    private static final byte[] CHAR_CLASSES = new byte[Character.MAX_VALUE + 1];
+    private static final int[][] TRANSITIONS = new int[STATE_COUNT][CHAR_CLASS_COUNT];
+    private static final Token[] ACCEPTED_TOKENS = new Token[STATE_COUNT];
+    private static final String[] FIXED_STRINGS = new String[TOKEN_VALUES.length];
+
+    private static final String[] KEYWORDS = {
+            "code", "scan", "print", "if", "while", "int", "boolean", "string", "true", "false"
+    };
+    private static final Token[] KEYWORD_TOKENS = {
+            Token.CODE, Token.SCAN, Token.PRINT, Token.IF, Token.WHILE,
+            Token.INT, Token.BOOLEAN, Token.STRING, Token.TRUE, Token.FALSE
+    };
+
+    static {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (Character.isAlphabetic(c)) {
+                CHAR_CLASSES[c] = LETTER;
             }
-            if (openQuotes) {
-                stringBuilder.append(c);
-                continue;
+            else if (Character.isDigit(c)) {
+                CHAR_CLASSES[c] = DIGIT;
             }
-            if (c == '{') {
-                strings.add("{");
-                tokens.add(Token.OP_CURLY);
-                continue;
+        }
+        CHAR_CLASSES[' '] = SPACE;
+        CHAR_CLASSES['\n'] = SPACE;
+        CHAR_CLASSES['\t'] = SPACE;
+        CHAR_CLASSES['\"'] = QUOTE;
+        CHAR_CLASSES['{'] = OP_CURLY;
+        CHAR_CLASSES['}'] = CL_CURLY;
+        CHAR_CLASSES['('] = OP_PAREN;
+        CHAR_CLASSES[')'] = CL_PAREN;
+        CHAR_CLASSES['+'] = PLUS;
+        CHAR_CLASSES['-'] = MINUS;
+        CHAR_CLASSES[';'] = SEMICOLON;
+        CHAR_CLASSES['='] = EQUAL;
+        CHAR_CLASSES['<'] = LESS;
+        CHAR_CLASSES['>'] = GREATER;
+        CHAR_CLASSES['!'] = BANG;
+
+        for (int[] row : TRANSITIONS) {
+            Arrays.fill(row, STOP);
+        }
+        TRANSITIONS[START][OTHER] = S_ERROR;
+        TRANSITIONS[START][SPACE] = S_SPACE;
+        TRANSITIONS[START][LETTER] = S_IDENTIFIER;
+        TRANSITIONS[START][DIGIT] = S_NUMBER;
+        TRANSITIONS[START][QUOTE] = S_STRING;
+        TRANSITIONS[START][OP_CURLY] = S_OP_CURLY;
+        TRANSITIONS[START][CL_CURLY] = S_CL_CURLY;
+        TRANSITIONS[START][OP_PAREN] = S_OP_PAREN;
+        TRANSITIONS[START][CL_PAREN] = S_CL_PAREN;
+        TRANSITIONS[START][PLUS] = S_PLUS;
+        TRANSITIONS[START][MINUS] = S_MINUS;
+        TRANSITIONS[START][SEMICOLON] = S_SEMICOLON;
+        TRANSITIONS[START][EQUAL] = S_ASSIGN;
+        TRANSITIONS[START][LESS] = S_LESS;
+        TRANSITIONS[START][GREATER] = S_GREATER;
+        TRANSITIONS[START][BANG] = S_BANG;
+        TRANSITIONS[S_SPACE][SPACE] = S_SPACE;
+        TRANSITIONS[S_IDENTIFIER][LETTER] = S_IDENTIFIER;
+        TRANSITIONS[S_NUMBER][DIGIT] = S_NUMBER;
+        Arrays.fill(TRANSITIONS[S_STRING], S_STRING);
+        TRANSITIONS[S_STRING][QUOTE] = S_STRING_END;
+        TRANSITIONS[S_ASSIGN][EQUAL] = S_EQUALS;
+        TRANSITIONS[S_LESS][EQUAL] = S_LESS_EQ;
+        TRANSITIONS[S_GREATER][EQUAL] = S_GREATER_EQ;
+        TRANSITIONS[S_BANG][EQUAL] = S_DIFFERENT;
+
+        ACCEPTED_TOKENS[S_IDENTIFIER] = Token.IDENTIFIER;
+        ACCEPTED_TOKENS[S_NUMBER] = Token.NUMBER;
+        ACCEPTED_TOKENS[S_STRING_END] = Token.STRING_VALUE;
+        ACCEPTED_TOKENS[S_OP_CURLY] = Token.OP_CURLY;
+        ACCEPTED_TOKENS[S_CL_CURLY] = Token.CL_CURLY;
+        ACCEPTED_TOKENS[S_OP_PAREN] = Token.OP_PAREN;
+        ACCEPTED_TOKENS[S_CL_PAREN] = Token.CL_PAREN;
+        ACCEPTED_TOKENS[S_PLUS] = Token.PLUS;
+        ACCEPTED_TOKENS[S_MINUS] = Token.MINUS;
+        ACCEPTED_TOKENS[S_SEMICOLON] = Token.SEMICOLON;
+        ACCEPTED_TOKENS[S_ASSIGN] = Token.ASSIGN;
+        ACCEPTED_TOKENS[S_EQUALS] = Token.EQUALS;
+        ACCEPTED_TOKENS[S_LESS] = Token.LESS;
+        ACCEPTED_TOKENS[S_LESS_EQ] = Token.LESS_EQ;
+        ACCEPTED_TOKENS[S_GREATER] = Token.GREATER;
+        ACCEPTED_TOKENS[S_GREATER_EQ] = Token.GREATER_EQ;
+        ACCEPTED_TOKENS[S_BANG] = Token.ERROR;
+        ACCEPTED_TOKENS[S_DIFFERENT] = Token.DIFFERENT;
+        ACCEPTED_TOKENS[S_ERROR] = Token.ERROR;
+
+        for (int k = 0; k < KEYWORDS.length; k++) {
+            FIXED_STRINGS[KEYWORD_TOKENS[k].ordinal()] = KEYWORDS[k];
+        }
+        FIXED_STRINGS[Token.QUOTES.ordinal()] = "\"";
+        FIXED_STRINGS[Token.OP_CURLY.ordinal()] = "{";
+        FIXED_STRINGS[Token.CL_CURLY.ordinal()] = "}";
+        FIXED_STRINGS[Token.OP_PAREN.ordinal()] = "(";
+        FIXED_STRINGS[Token.CL_PAREN.ordinal()] = ")";
+        FIXED_STRINGS[Token.PLUS.ordinal()] = "+";
+        FIXED_STRINGS[Token.MINUS.ordinal()] = "-";
+        FIXED_STRINGS[Token.SEMICOLON.ordinal()] = ";";
+        FIXED_STRINGS[Token.ASSIGN.ordinal()] = "=";
+        FIXED_STRINGS[Token.EQUALS.ordinal()] = "==";
+        FIXED_STRINGS[Token.LESS.ordinal()] = "<";
+        FIXED_STRINGS[Token.LESS_EQ.ordinal()] = "<=";
+        FIXED_STRINGS[Token.GREATER.ordinal()] = ">";
+        FIXED_STRINGS[Token.GREATER_EQ.ordinal()] = ">=";
+        FIXED_STRINGS[Token.DIFFERENT.ordinal()] = "!=";
+    }
+
+    private static final int PARALLEL_CHUNK_LENGTH = 1 << 18;
+
+    private CharSequence source;
+    private TokenBuffer buffer;
+    private IdentifierPool identifiers;
+    private int errorCount, editFrom, editOldEnd, editNewEnd;
+    private boolean parallel, isTrackingEdits;
+
+    public boolean scan(CharSequence input) {
+        source = input;
+        identifiers = new IdentifierPool();
+        isTrackingEdits = false;
+        int chunkCount = parallel ? getChunkCount(input.length()) : 1;
+        if (chunkCount > 1) {
+            buffer = scanParallel(input, chunkCount, identifiers);
+        }
+        else {
+            buffer = scanRange(input, 0, input.length(), identifiers);
+        }
+        errorCount = countErrors(buffer, 0, buffer.size());
+        return errorCount == 0;
+    }
+
+    public void load(CharSequence input, TokenBuffer tokens, IdentifierPool identifiers) {
+        source = input;
+        buffer = tokens;
+        this.identifiers = identifiers;
+        errorCount = countErrors(buffer, 0, buffer.size());
+        isTrackingEdits = false;
+    }
+
+    public void clear() {
+        source = null;
+        buffer = null;
+        identifiers = null;
+        errorCount = 0;
+        isTrackingEdits = false;
+    }
+
+    private static TokenBuffer scanRange(CharSequence input, int from, int to, IdentifierPool identifiers) {
+        TokenBuffer tokens = new TokenBuffer(Math.max(16, (to - from) / 4));
+        int i = from;
+        while (i < to) {
+            i = scanToken(input, i, to, tokens, identifiers);
+        }
+        return tokens;
+    }
+
+    private static int getChunkCount(int length) {
+        int maxChunks = ForkJoinPool.getCommonPoolParallelism() * 4;
+        return Math.min(maxChunks, length / PARALLEL_CHUNK_LENGTH);
+    }
+
+    private static TokenBuffer scanParallel(CharSequence input, int chunkCount, IdentifierPool identifiers) {
+        int[] bounds = getChunkBounds(input, chunkCount);
+        List<RecursiveTask<TokenBuffer>> tasks = new ArrayList<>();
+        IdentifierPool[] chunkIdentifiers = new IdentifierPool[bounds.length - 1];
+        for (int k = 0; k + 1 < bounds.length; k++) {
+            int from = bounds[k], to = bounds[k + 1];
+            IdentifierPool pool = new IdentifierPool();
+            chunkIdentifiers[k] = pool;
+            tasks.add(new RecursiveTask<>() {
+                @Override
+                protected TokenBuffer compute() {
+                    return scanRange(input, from, to, pool);
+                }
+            });
+        }
+        ForkJoinPool.commonPool().invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                ForkJoinTask.invokeAll(tasks);
+                return null;
             }
-            if (c == '}') {
-                strings.add("}");
-                tokens.add(Token.CL_CURLY);
-                continue;
+        });
+        // Interning the chunk pools in order gives every identifier the same id as a sequential scan
+        TokenBuffer tokens = new TokenBuffer(input.length() / 4);
+        for (int k = 0; k < tasks.size(); k++) {
+            TokenBuffer chunk = tasks.get(k).join();
+            IdentifierPool pool = chunkIdentifiers[k];
+            int[] ids = new int[pool.size()];
+            for (int id = 0; id < ids.length; id++) {
+                ids[id] = identifiers.intern(pool.getName(id));
             }
-            if (c == '(') {
-                strings.add("(");
-                tokens.add(Token.OP_PAREN);
-                continue;
+            for (int i = 0; i < chunk.size(); i++) {
+                if (chunk.getValue(i) != -1) {
+                    chunk.setValue(i, ids[chunk.getValue(i)]);
+                }
             }
-            if (c == ')') {
-                strings.add(")");
-                tokens.add(Token.CL_PAREN);
-                continue;
+            tokens.addAll(chunk);
+        }
+        return tokens;
+    }
+
+    // Chunks are split at whitespace that is preceded by an even number of quotes, which is always a token boundary
+    private static int[] getChunkBounds(CharSequence input, int chunkCount) {
+        int length = input.length();
+        int[] bounds = new int[chunkCount + 1];
+        int found = 1, i = 0;
+        boolean inString = false;
+        for (int k = 1; k < chunkCount; k++) {
+            int target = (int) ((long) length * k / chunkCount);
+            while (i < length && (i < target || inString || CHAR_CLASSES[input.charAt(i)] != SPACE)) {
+                if (input.charAt(i) == '\"') {
+                    inString = !inString;
+                }
+                i++;
             }
-            if (c == '+') {
-                strings.add("+");
-                tokens.add(Token.PLUS);
-                continue;
+            if (i >= length) {
+                break;
             }
-            if (c == '-') {
-                strings.add("-");
-                tokens.add(Token.MINUS);
-                continue;
+            if (bounds[found - 1] != i) {
+                bounds[found++] = i;
             }
-            if (c == ';') {
-                strings.add(";");
-                tokens.add(Token.SEMICOLON);
+        }
+        bounds[found++] = length;
+        return Arrays.copyOf(bounds, found);
+    }
+
+    public boolean scan(Path path) throws IOException {
+        return scan(MappedSource.open(path));
+    }
+
+    public boolean update(CharSequence input, int offset, int removedLength, int insertedLength) {
+        if (buffer == null) {
+            return scan(input);
+        }
+        int shift = insertedLength - removedLength;
+        // Tokens that end before the edit can not change, so scanning restarts right after the last of them
+        int first = buffer.findFirstEndingAtOrAfter(offset);
+        if (first > 0 && first < buffer.size() && isUnclosedStringContent(buffer, first)) {
+            first--;
+        }
+        int i = first > 0 ? buffer.getEnd(first - 1) : 0;
+        int oldIndex = first, editEnd = offset + insertedLength;
+        TokenBuffer scanned = new TokenBuffer(16);
+        while (i < input.length()) {
+            int count = scanned.size();
+            i = scanToken(input, i, input.length(), scanned, identifiers);
+            if (scanned.size() == count) {
                 continue;
             }
-            boolean isLastOrNotEqual = i + 1 >= input.length() || input.charAt(i + 1) != '=';
-            if (c == '=') {
-                if (isLastOrNotEqual) {
-                    strings.add("=");
-                    tokens.add(Token.ASSIGN);
-                }
-                else {
-                    strings.add("==");
-                    tokens.add(Token.EQUALS);
-                    i++;
-                }
+            int start = scanned.getStart(count);
+            if (start < editEnd) {
                 continue;
             }
-            if (c == '<') {
-                if (isLastOrNotEqual) {
-                    strings.add("<");
-                    tokens.add(Token.LESS);
-                }
-                else {
-                    strings.add("<=");
-                    tokens.add(Token.LESS_EQ);
-                    i++;
-                }
-                continue;
+            while (oldIndex < buffer.size() && buffer.getStart(oldIndex) + shift < start) {
+                oldIndex++;
             }
-            if (c == '>') {
-                if (isLastOrNotEqual) {
-                    strings.add(">");
-                    tokens.add(Token.GREATER);
-                }
-                else {
-                    strings.add(">=");
-                    tokens.add(Token.GREATER_EQ);
-                    i++;
-                }
-                continue;
+            // Once a new token starts where an old one did after the edit, the rest of the tokens are the same
+            if (oldIndex < buffer.size() && buffer.getStart(oldIndex) + shift == start
+                    && buffer.getKind(oldIndex) == scanned.getKind(count)
+                    && !isUnclosedStringContent(buffer, oldIndex) && !isUnclosedStringContent(scanned, count)) {
+                return splice(input, first, oldIndex, scanned, count, shift);
             }
-            if (c == '!') {
-                if (isLastOrNotEqual) {
-                    strings.add("!");
-                    tokens.add(Token.ERROR);
-                    result = false;
-                }
-                else {
-                    strings.add("!=");
-                    tokens.add(Token.DIFFERENT);
-                    i++;
-                }
-                continue;
+        }
+        return splice(input, first, buffer.size(), scanned, scanned.size(), shift);
+    }
+
+    private boolean splice(CharSequence input, int from, int to, TokenBuffer scanned, int count, int shift) {
+        errorCount += countErrors(scanned, 0, count) - countErrors(buffer, from, to);
+        buffer.replace(from, to, scanned, count, shift);
+        source = input;
+        if (isTrackingEdits) {
+            addEdit(from, to, count);
+        }
+        return errorCount == 0;
+    }
+
+    // Merges the replaced tokens into the range that changed since the last call to clearEdit
+    private void addEdit(int from, int to, int count) {
+        int tokenShift = count - (to - from);
+        if (editFrom == editNewEnd && editFrom == editOldEnd) {
+            editFrom = from;
+            editOldEnd = to;
+            editNewEnd = from + count;
+            return;
+        }
+        if (from < editFrom) {
+            editFrom = from;
+        }
+        if (to > editNewEnd) {
+            editOldEnd += to - editNewEnd;
+            editNewEnd = to;
+        }
+        editNewEnd += tokenShift;
+    }
+
+    public TokenEdit getEdit() {
+        if (!isTrackingEdits) {
+            return null;
+        }
+        return new TokenEdit(editFrom, editOldEnd - editFrom, editNewEnd - editFrom);
+    }
+
+    public void clearEdit() {
+        isTrackingEdits = buffer != null;
+        editFrom = editOldEnd = editNewEnd = 0;
+    }
+
+    private static int scanToken(CharSequence input, int i, int to, TokenBuffer buffer, IdentifierPool identifiers) {
+        int start = i, state = START, next;
+        while (i < to && (next = TRANSITIONS[state][CHAR_CLASSES[input.charAt(i)]]) != STOP) {
+            state = next;
+            i++;
+        }
+        if (state == S_SPACE) {
+            return i;
+        }
+        if (state == S_STRING) {
+            // The quotes were never closed, so the rest of the input is reported as is
+            buffer.add(Token.QUOTES.ordinal(), start, start + 1);
+            buffer.add(Token.ERROR.ordinal(), start + 1, i);
+            return i;
+        }
+        Token token = getAcceptedToken(state, input, start, i);
+        if (token == Token.IDENTIFIER) {
+            buffer.add(token.ordinal(), start, i, identifiers.intern(input, start, i));
+        }
+        else {
+            buffer.add(token.ordinal(), start, i);
+        }
+        return i;
+    }
+
+    private static boolean isUnclosedStringContent(TokenBuffer buffer, int index) {
+        return index > 0 && buffer.getKind(index) == Token.ERROR.ordinal()
+                && buffer.getKind(index - 1) == Token.QUOTES.ordinal();
+    }
+
+    private static int countErrors(TokenBuffer buffer, int from, int to) {
+        int errors = 0;
+        for (int i = from; i < to; i++) {
+            if (buffer.getKind(i) == Token.ERROR.ordinal() && !isUnclosedStringContent(buffer, i)) {
+                errors++;
             }
-            if (Character.isAlphabetic(c)) {
-                stringBuilder.append(c);
-                if (i + 1 >= input.length() || !Character.isAlphabetic(input.charAt(i + 1))) {
-                    String string = stringBuilder.toString();
-                    strings.add(string);
-                    tokens.add(reservedWordsMap.getOrDefault(string, Token.IDENTIFIER));
-                    stringBuilder = new StringBuilder();
-                }
+        }
+        return errors;
+    }
+
+    static int getNextState(int state, char c) {
+        return TRANSITIONS[state][CHAR_CLASSES[c]];
+    }
+
+    static boolean isSkipped(int state) {
+        return state == S_SPACE;
+    }
+
+    static boolean isUnclosedString(int state) {
+        return state == S_STRING;
+    }
+
+    static Token getAcceptedToken(int state, CharSequence input, int start, int end) {
+        Token token = ACCEPTED_TOKENS[state];
+        if (token == Token.IDENTIFIER) {
+            token = getKeyword(input, start, end);
+        }
+        return token;
+    }
+
+    static String getFixedString(Token token) {
+        return FIXED_STRINGS[token.ordinal()];
+    }
+
+    private static Token getKeyword(CharSequence input, int start, int end) {
+        int length = end - start;
+        for (int k = 0; k < KEYWORDS.length; k++) {
+            String keyword = KEYWORDS[k];
+            if (keyword.length() != length || keyword.charAt(0) != input.charAt(start)) {
                 continue;
             }
-            if (Character.isDigit(c)) {
-                stringBuilder.append(c);
-                if (i + 1 >= input.length() || !Character.isDigit(input.charAt(i + 1))) {
-                    String string = stringBuilder.toString();
-                    strings.add(string);
-                    tokens.add(Token.NUMBER);
-                    stringBuilder = new StringBuilder();
-                }
-                continue;
+            int j = 1;
+            while (j < length && keyword.charAt(j) == input.charAt(start + j)) {
+                j++;
             }
-            if (c != ' ' && c != '\n' && c != '\t') {
-                strings.add("" + c);
-                tokens.add(Token.ERROR);
-                result = false;
+            if (j == length) {
+                return KEYWORD_TOKENS[k];
             }
         }
-        if (openQuotes) {
-            String string = stringBuilder.toString();
-            strings.add(string);
-            tokens.add(Token.ERROR);
-        }
-        return result;
+        return Token.IDENTIFIER;
     }
 
-    public Boolean[] checkReservedWords(ArrayList<Token> tokens) {
-        Boolean[] reservedWords = new Boolean[tokens.size()];
-        for (int i = 0; i < reservedWords.length; i++) {
-            reservedWords[i] = reservedWordsSet.contains(tokens.get(i));
+    public BitSet getReservedWords() {
+        BitSet reservedWords = new BitSet(buffer.size());
+        for (int i = 0; i < buffer.size(); i++) {
+            if (TOKEN_VALUES[buffer.getKind(i)].is(TokenClass.KEYWORD)) {
+                reservedWords.set(i);
+            }
         }
         return reservedWords;
     }
 
-    public ArrayList<String> getStrings() {
-        return strings;
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
     }
 
-    public ArrayList<Token> getTokens() {
-        return tokens;
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public boolean isScanned() {
+        return buffer != null;
+    }
+
+    public boolean hasErrors() {
+        return errorCount > 0;
+    }
+
+    public int getTokenCount() {
+        return buffer.size();
+    }
+
+    public Token getToken(int index) {
+        return TOKEN_VALUES[buffer.getKind(index)];
+    }
+
+    public String getString(int index) {
+        return getString(source, buffer, index);
+    }
+
+    private static String getString(CharSequence source, TokenBuffer buffer, int index) {
+        int start = buffer.getStart(index), end = buffer.getEnd(index);
+        if (buffer.getKind(index) == Token.STRING_VALUE.ordinal()) {
+            start++;
+            end--;
+        }
+        return source.subSequence(start, end).toString();
+    }
+
+    public TokenBuffer getTokenBuffer() {
+        return buffer;
+    }
+
+    public IdentifierPool getIdentifiers() {
+        return identifiers;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public TokenStream getTokenStream() {
+        CharSequence source = this.source;
+        TokenBuffer buffer = this.buffer;
+        IdentifierPool identifiers = this.identifiers;
+        return new TokenStream() {
+            @Override
+            public boolean hasToken(int index) {
+                return index < buffer.size();
+            }
+
+            @Override
+            public Token getToken(int index) {
+                return TOKEN_VALUES[buffer.getKind(index)];
+            }
+
+            @Override
+            public String getString(int index) {
+                return Lexer.getString(source, buffer, index);
+            }
+
+            @Override
+            public int getIdentifier(int index) {
+                return buffer.getValue(index);
+            }
+
+            @Override
+            public IdentifierPool getIdentifiers() {
+                return identifiers;
+            }
+
+            @Override
+            public void release(int index) {
+            }
+        };
+    }
+
+    public List<String> getStrings() {
+        CharSequence source = this.source;
+        TokenBuffer buffer = this.buffer;
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                return getString(source, buffer, index);
+            }
+
+            @Override
+            public int size() {
+                return buffer.size();
+            }
+        };
+    }
+
+    public List<Token> getTokens() {
+        TokenBuffer buffer = this.buffer;
+        return new AbstractList<>() {
+            @Override
+            public Token get(int index) {
+                return TOKEN_VALUES[buffer.getKind(index)];
+            }
+
+            @Override
+            public int size() {
+                return buffer.size();
+            }
+        };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,74 @@
+package LexicalAnalysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class MappedSource {
+    private MappedSource() {
+    }
+
+    public static CharSequence open(Path path) throws IOException {
+        MappedByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("The file " + path + " is too large to be scanned");
+            }
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (isAscii(bytes)) {
+            return new AsciiCharSequence(bytes);
+        }
+        return StandardCharsets.UTF_8.decode(bytes);
+    }
+
+    private static boolean isAscii(ByteBuffer bytes) {
+        int i = 0, limit = bytes.limit();
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            if ((bytes.getLong(i) & 0x8080808080808080L) != 0) {
+                return false;
+            }
+        }
+        for (; i < limit; i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class AsciiCharSequence implements CharSequence {
+        private final ByteBuffer bytes;
+
+        private AsciiCharSequence(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes.get(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiCharSequence(bytes.slice(start, end - start));
+        }
+
+        @Override
+        public String toString() {
+            byte[] array = new byte[bytes.limit()];
+            bytes.get(0, array);
+            return new String(array, StandardCharsets.US_ASCII);
+        }
+    }
+}
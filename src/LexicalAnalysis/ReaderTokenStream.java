@@ -0,0 +1,184 @@
+package LexicalAnalysis;
+
+import Utilities.IdentifierPool;
+import Utilities.Token;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+public class ReaderTokenStream implements TokenStream {
+    private static final int BLOCK_SIZE = 8192;
+    private static final int INITIAL_WINDOW = 8;
+    private final Reader reader;
+    private final char[] block;
+    private final StringBuilder lexeme;
+    private final IdentifierPool identifiers;
+    private int position, limit;
+    private boolean endOfInput;
+    private Token[] tokens;
+    private String[] strings;
+    private int[] values;
+    private int base, count, errorCount;
+
+    public ReaderTokenStream(Reader reader) {
+        this.reader = reader;
+        block = new char[BLOCK_SIZE];
+        lexeme = new StringBuilder();
+        identifiers = new IdentifierPool();
+        tokens = new Token[INITIAL_WINDOW];
+        strings = new String[INITIAL_WINDOW];
+        values = new int[INITIAL_WINDOW];
+        position = 0;
+        limit = 0;
+        endOfInput = false;
+        base = 0;
+        count = 0;
+        errorCount = 0;
+    }
+
+    @Override
+    public boolean hasToken(int index) {
+        while (count <= index && scanNext()) {
+        }
+        return index < count;
+    }
+
+    @Override
+    public Token getToken(int index) {
+        checkWindow(index);
+        return tokens[index & (tokens.length - 1)];
+    }
+
+    @Override
+    public String getString(int index) {
+        checkWindow(index);
+        return strings[index & (strings.length - 1)];
+    }
+
+    @Override
+    public int getIdentifier(int index) {
+        checkWindow(index);
+        return values[index & (values.length - 1)];
+    }
+
+    @Override
+    public IdentifierPool getIdentifiers() {
+        return identifiers;
+    }
+
+    @Override
+    public void release(int index) {
+        base = Math.max(base, Math.min(index, count));
+    }
+
+    // The lexical errors in the tokens read so far, counted as Lexer.scan counts them
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    // Reads the tokens left after the ones the parser needed, so their errors are counted too
+    public void skipRemaining() {
+        while (hasToken(count)) {
+            release(count);
+        }
+    }
+
+    private void checkWindow(int index) {
+        if (!hasToken(index)) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        if (index < base) {
+            throw new IllegalStateException("Token " + index + " was already released");
+        }
+    }
+
+    private boolean scanNext() {
+        while (true) {
+            int state = Lexer.START;
+            lexeme.setLength(0);
+            while (position < limit || fill()) {
+                char c = block[position];
+                int next = Lexer.getNextState(state, c);
+                if (next == Lexer.STOP) {
+                    break;
+                }
+                state = next;
+                lexeme.append(c);
+                position++;
+            }
+            if (state == Lexer.START) {
+                return false;
+            }
+            if (Lexer.isSkipped(state)) {
+                continue;
+            }
+            if (Lexer.isUnclosedString(state)) {
+                add(Token.QUOTES, Lexer.getFixedString(Token.QUOTES), -1);
+                add(Token.ERROR, lexeme.substring(1), -1);
+                return true;
+            }
+            Token token = Lexer.getAcceptedToken(state, lexeme, 0, lexeme.length());
+            if (token == Token.ERROR) {
+                errorCount++;
+            }
+            if (token == Token.IDENTIFIER) {
+                int identifier = identifiers.intern(lexeme, 0, lexeme.length());
+                add(token, identifiers.getName(identifier), identifier);
+                return true;
+            }
+            String string = Lexer.getFixedString(token);
+            if (string == null) {
+                string = token == Token.STRING_VALUE ? lexeme.substring(1, lexeme.length() - 1) : lexeme.toString();
+            }
+            add(token, string, -1);
+            return true;
+        }
+    }
+
+    private boolean fill() {
+        if (endOfInput) {
+            return false;
+        }
+        try {
+            int read = reader.read(block);
+            while (read == 0) {
+                read = reader.read(block);
+            }
+            if (read < 0) {
+                endOfInput = true;
+                return false;
+            }
+            position = 0;
+            limit = read;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void add(Token token, String string, int value) {
+        if (count - base == tokens.length) {
+            grow();
+        }
+        tokens[count & (tokens.length - 1)] = token;
+        strings[count & (strings.length - 1)] = string;
+        values[count & (values.length - 1)] = value;
+        count++;
+    }
+
+    private void grow() {
+        int capacity = tokens.length * 2;
+        Token[] newTokens = new Token[capacity];
+        String[] newStrings = new String[capacity];
+        int[] newValues = new int[capacity];
+        for (int i = base; i < count; i++) {
+            newTokens[i & (capacity - 1)] = tokens[i & (tokens.length - 1)];
+            newStrings[i & (capacity - 1)] = strings[i & (strings.length - 1)];
+            newValues[i & (capacity - 1)] = values[i & (values.length - 1)];
+        }
+        tokens = newTokens;
+        strings = newStrings;
+        values = newValues;
+    }
+}
@@ -0,0 +1,227 @@
+package LexicalAnalysis;
+
+import Utilities.Serialization;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Keeps a gap where the last edit was, so an edit only moves the tokens between it and the edit before. The tokens
+// after the gap are read with the shift of the edits before them added
+public class TokenBuffer {
+    private static final int INITIAL_CAPACITY = 64;
+    private int[] kinds, starts, ends, values;
+    private int size, gapStart, gapLength, tailShift;
+
+    public TokenBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public TokenBuffer(int capacity) {
+        capacity = Math.max(capacity, 1);
+        kinds = new int[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+        values = new int[capacity];
+        size = 0;
+        gapStart = 0;
+        gapLength = capacity;
+        tailShift = 0;
+    }
+
+    public void add(int kind, int start, int end) {
+        add(kind, start, end, -1);
+    }
+
+    public void add(int kind, int start, int end, int value) {
+        moveGap(size);
+        if (gapLength == 0) {
+            grow(size + 1);
+        }
+        kinds[size] = kind;
+        starts[size] = start;
+        ends[size] = end;
+        values[size] = value;
+        size++;
+        gapStart++;
+        gapLength--;
+    }
+
+    public void addAll(TokenBuffer tokens) {
+        moveGap(size);
+        tokens.moveGap(tokens.size);
+        if (tokens.size > gapLength) {
+            grow(size + tokens.size);
+        }
+        System.arraycopy(tokens.kinds, 0, kinds, size, tokens.size);
+        System.arraycopy(tokens.starts, 0, starts, size, tokens.size);
+        System.arraycopy(tokens.ends, 0, ends, size, tokens.size);
+        System.arraycopy(tokens.values, 0, values, size, tokens.size);
+        size += tokens.size;
+        gapStart += tokens.size;
+        gapLength -= tokens.size;
+    }
+
+    // Puts the first count tokens given in place of the ones from the index from to the one to, and moves the ones
+    // after them by the shift
+    public void replace(int from, int to, TokenBuffer tokens, int count, int shift) {
+        moveGap(to);
+        gapStart = from;
+        gapLength += to - from;
+        size -= to - from;
+        if (count > gapLength) {
+            grow(size + count);
+        }
+        for (int i = 0; i < count; i++) {
+            kinds[gapStart + i] = tokens.getKind(i);
+            starts[gapStart + i] = tokens.getStart(i);
+            ends[gapStart + i] = tokens.getEnd(i);
+            values[gapStart + i] = tokens.getValue(i);
+        }
+        gapStart += count;
+        gapLength -= count;
+        size += count;
+        tailShift += shift;
+    }
+
+    public int findFirstEndingAtOrAfter(int offset) {
+        int low = 0, high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getEnd(middle) < offset) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public void removeLast() {
+        moveGap(size);
+        size--;
+        gapStart--;
+        gapLength++;
+    }
+
+    public void clear() {
+        size = 0;
+        gapStart = 0;
+        gapLength = kinds.length;
+        tailShift = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getKind(int index) {
+        return kinds[getPosition(index)];
+    }
+
+    public int getStart(int index) {
+        return index < gapStart ? starts[index] : starts[index + gapLength] + tailShift;
+    }
+
+    public int getEnd(int index) {
+        return index < gapStart ? ends[index] : ends[index + gapLength] + tailShift;
+    }
+
+    public int getValue(int index) {
+        return values[getPosition(index)];
+    }
+
+    public void setValue(int index, int value) {
+        values[getPosition(index)] = value;
+    }
+
+    // Every token is written as its distance to the end of the previous one and its length, which are small numbers
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        byte[] kindBytes = new byte[size];
+        int[] gaps = new int[size], lengths = new int[size], identifiers = new int[size];
+        for (int i = 0; i < size; i++) {
+            kindBytes[i] = (byte) getKind(i);
+            gaps[i] = getStart(i) - (i > 0 ? getEnd(i - 1) : 0);
+            lengths[i] = getEnd(i) - getStart(i);
+            identifiers[i] = getValue(i) + 1;
+        }
+        out.write(kindBytes);
+        Serialization.writeVarInts(out, gaps, size);
+        Serialization.writeVarInts(out, lengths, size);
+        Serialization.writeVarInts(out, identifiers, size);
+    }
+
+    public static TokenBuffer read(ByteBuffer in) {
+        int size = in.getInt();
+        TokenBuffer buffer = new TokenBuffer(1);
+        buffer.kinds = new int[size];
+        for (int i = 0; i < size; i++) {
+            buffer.kinds[i] = in.get();
+        }
+        buffer.starts = Serialization.readVarInts(in, size);
+        buffer.ends = Serialization.readVarInts(in, size);
+        buffer.values = Serialization.readVarInts(in, size);
+        for (int i = 0; i < size; i++) {
+            buffer.starts[i] += i > 0 ? buffer.ends[i - 1] : 0;
+            buffer.ends[i] += buffer.starts[i];
+            buffer.values[i]--;
+        }
+        buffer.size = size;
+        buffer.gapStart = size;
+        buffer.gapLength = 0;
+        return buffer;
+    }
+
+    private int getPosition(int index) {
+        return index < gapStart ? index : index + gapLength;
+    }
+
+    // Moves the tokens between the gap and the index to the other side of it
+    private void moveGap(int index) {
+        if (index < gapStart) {
+            int count = gapStart - index;
+            System.arraycopy(kinds, index, kinds, index + gapLength, count);
+            System.arraycopy(starts, index, starts, index + gapLength, count);
+            System.arraycopy(ends, index, ends, index + gapLength, count);
+            System.arraycopy(values, index, values, index + gapLength, count);
+            for (int i = index + gapLength; i < gapStart + gapLength; i++) {
+                starts[i] -= tailShift;
+                ends[i] -= tailShift;
+            }
+        }
+        else if (index > gapStart) {
+            int count = index - gapStart;
+            System.arraycopy(kinds, gapStart + gapLength, kinds, gapStart, count);
+            System.arraycopy(starts, gapStart + gapLength, starts, gapStart, count);
+            System.arraycopy(ends, gapStart + gapLength, ends, gapStart, count);
+            System.arraycopy(values, gapStart + gapLength, values, gapStart, count);
+            for (int i = gapStart; i < index; i++) {
+                starts[i] += tailShift;
+                ends[i] += tailShift;
+            }
+        }
+        gapStart = index;
+        if (gapStart == size) {
+            tailShift = 0;
+        }
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, kinds.length * 2);
+        int tail = size - gapStart, newGapLength = capacity - size;
+        kinds = grow(kinds, capacity, tail);
+        starts = grow(starts, capacity, tail);
+        ends = grow(ends, capacity, tail);
+        values = grow(values, capacity, tail);
+        gapLength = newGapLength;
+    }
+
+    private int[] grow(int[] array, int capacity, int tail) {
+        int[] grown = Arrays.copyOf(array, capacity);
+        System.arraycopy(array, array.length - tail, grown, capacity - tail, tail);
+        return grown;
+    }
+}
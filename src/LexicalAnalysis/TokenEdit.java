@@ -0,0 +1,12 @@
+package LexicalAnalysis;
+
+// The tokens from the index 'from' that replaced 'removedCount' tokens of the previous scan with 'insertedCount' new ones
+public record TokenEdit(int from, int removedCount, int insertedCount) {
+    public boolean isEmpty() {
+        return removedCount == 0 && insertedCount == 0;
+    }
+
+    public int getShift() {
+        return insertedCount - removedCount;
+    }
+}
@@ -0,0 +1,19 @@
+package LexicalAnalysis;
+
+import Utilities.IdentifierPool;
+import Utilities.Token;
+
+public interface TokenStream {
+    boolean hasToken(int index);
+
+    Token getToken(int index);
+
+    String getString(int index);
+
+    int getIdentifier(int index);
+
+    IdentifierPool getIdentifiers();
+
+    // Tokens before the index will not be read again, so the stream is free to discard them
+    void release(int index);
+}
@@ -1,17 +1,56 @@
-import CodeGenerators.IntermediateCodeGenerator;
-import CodeGenerators.ObjectCodeGenerator;
-import LexicalAnalysis.Lexer;
-import SemanticAnalysis.SemanticAnalyzer;
-import SyntacticAnalysis.Parser;
+import Caching.CompilationCache;
+import Compilation.CompilerSession;
+import Utilities.Diagnostic;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public class Main {
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(compileFiles(args) ? 0 : 1);
+        }
         GUI userInterface = new GUI();
-        Lexer lexer = new Lexer();
-        Parser parser = new Parser();
-        SemanticAnalyzer semanticAnalyzer = new SemanticAnalyzer();
-        IntermediateCodeGenerator intermediateCodeGenerator = new IntermediateCodeGenerator();
-        ObjectCodeGenerator objectCodeGenerator = new ObjectCodeGenerator();
-        Controller controller = new Controller(userInterface, lexer, parser, semanticAnalyzer, intermediateCodeGenerator, objectCodeGenerator);
+        String cacheDirectory = System.getProperty("compiler.cache.directory", Path.of(System.getProperty("java.io.tmpdir"), "compiler-cache").toString());
+        CompilationCache compilationCache = new CompilationCache(Path.of(cacheDirectory));
+        compilationCache.setEnabled(Boolean.getBoolean("compiler.cache"));
+        CompilerSession session = new CompilerSession(compilationCache);
+        session.setOptimizing(Boolean.parseBoolean(System.getProperty("compiler.optimize", "true")));
+        Controller controller = new Controller(userInterface, session);
+    }
+
+    // Compiles every file given without the editor and tells whether all of them compiled
+    private static boolean compileFiles(String[] files) {
+        CompilerSession session = new CompilerSession();
+        session.setOptimizing(Boolean.parseBoolean(System.getProperty("compiler.optimize", "true")));
+        boolean compiled = true;
+        for (String file : files) {
+            CompilerSession.Result result;
+            try (Reader reader = Files.newBufferedReader(Path.of(file))) {
+                result = session.compile(reader);
+            } catch (IOException e) {
+                System.err.println(file + ": " + e);
+                compiled = false;
+                continue;
+            }
+            if (!result.scanned()) {
+                System.err.println(file + ": lexical error");
+            }
+            for (Diagnostic error : result.errors()) {
+                System.err.println(file + ":" + error.position() + ": " + error.message());
+            }
+            if (result.scanned() && result.parsed() && !result.analyzed()) {
+                System.err.println(file + ": semantic error");
+            }
+            if (result.intermediateCode() != null) {
+                System.out.print(result.intermediateCode());
+            }
+            else {
+                compiled = false;
+            }
+        }
+        return compiled;
     }
-}
\ No newline at end of file
+}
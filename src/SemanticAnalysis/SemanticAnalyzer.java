@@ -1,192 +1,269 @@
 package SemanticAnalysis;
 
 import SyntacticAnalysis.AbstractSyntaxTree;
-import SyntacticAnalysis.Node;
-import Utilities.SymbolData;
+import SyntacticAnalysis.Expression;
+import SyntacticAnalysis.NodeKind;
+import SyntacticAnalysis.SymbolTable;
+import Utilities.Symbols;
 import Utilities.Token;
-import Utilities.TokenTuple;
+import Utilities.TokenClass;
 
+import java.io.Serial;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Objects;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SemanticAnalyzer {
+    // Blocks with fewer nodes than this are cheaper to check on the same thread than to hand to another one
+    private static final int PARALLEL_THRESHOLD = 1 << 12;
     private AbstractSyntaxTree syntaxTree;
-    private HashMap<String, SymbolData> symbolDataMap;
+    private Symbols symbols;
+    private boolean parallel;
 
     public void initialize(AbstractSyntaxTree syntaxTree) {
         this.syntaxTree = syntaxTree;
-        this.symbolDataMap = new HashMap<>();
+        symbols = null;
     }
 
-    public boolean analyze() {
-        return analyze(syntaxTree.getRoot(), 0);
+    public void load(AbstractSyntaxTree syntaxTree, Symbols symbols) {
+        this.syntaxTree = syntaxTree;
+        this.symbols = symbols;
     }
 
-    private boolean analyze(Node node, int level) {
-        if (node instanceof Node.Declaration declarationNode) {
-            String id = declarationNode.getId();
-            Token dataType = declarationNode.getDataType();
-            int position = declarationNode.getBegin();
-            Node scopeNode = declarationNode.getParent();
-            if (checkExistenceOfSymbol(scopeNode, id)) {
-                return false;
-            }
-            SymbolData symbolData = scopeNode.getSymbolTable().addSymbol(id, dataType, position);
-            declarationNode.setFullId(symbolData.fullId());
-            symbolDataMap.put(declarationNode.getFullId(), symbolData);
-        }
-        else if (node instanceof Node.Assignment assignmentNode) {
-            String id = assignmentNode.getId();
-            Node scopeNode = assignmentNode.getParent();
-            if (!checkExistenceOfSymbol(scopeNode, id)) {
-                return false;
+    // A parallel analysis that fails is done again in order, so it stops at the same error
+    public boolean analyze() {
+        int declarationCount = countDeclarations(0, syntaxTree.size());
+        if (parallel && syntaxTree.size() >= PARALLEL_THRESHOLD * 2) {
+            symbols = new Symbols(declarationCount);
+            BlockAnalysis analysis = new BlockAnalysis(0, syntaxTree.size(), 0, newSymbolTable(), new AtomicBoolean());
+            boolean result = ForkJoinTask.inForkJoinPool() ? analysis.invoke() : ForkJoinPool.commonPool().invoke(analysis);
+            if (result) {
+                SymbolTable.layout(syntaxTree, symbols);
+                return true;
             }
-            SymbolData symbolData = Objects.requireNonNull(getSymbolData(scopeNode, id));
-            Token dataType = symbolData.dataType();
-            assignmentNode.setFullId(symbolData.fullId());
-            if (!checkExpression(scopeNode, assignmentNode.getExpression(), dataType)) {
-                return false;
+            for (int node = 0; node < syntaxTree.size(); node++) {
+                syntaxTree.setSymbol(node, -1);
             }
         }
-        else if (node instanceof Node.Scan scanNode) {
-            String id = scanNode.getId();
-            Node scopeNode = scanNode.getParent();
-            if (!checkExistenceOfSymbol(scopeNode, id)) {
-                return false;
-            }
-            String fullId = Objects.requireNonNull(getSymbolData(scopeNode, id)).fullId();
-            scanNode.setFullId(fullId);
+        symbols = new Symbols(declarationCount);
+        BlockAnalysis analysis = new BlockAnalysis(0, syntaxTree.size(), 0, newSymbolTable(), null);
+        if (!analysis.analyze(null)) {
+            symbols.truncate(analysis.nextSymbol);
+            return false;
         }
-        else if (node instanceof Node.Print printNode) {
-            String id = printNode.getId();
-            Node scopeNode = printNode.getParent();
-            if (!checkExistenceOfSymbol(scopeNode, id)) {
-                return false;
+        SymbolTable.layout(syntaxTree, symbols);
+        return true;
+    }
+
+    private SymbolTable newSymbolTable() {
+        return new SymbolTable(syntaxTree.getIdentifiers().size());
+    }
+
+    private int countDeclarations(int from, int to) {
+        int count = 0;
+        for (int node = from; node < to; node++) {
+            if (syntaxTree.getKind(node) == NodeKind.DECLARATION) {
+                count++;
             }
-            String fullId = Objects.requireNonNull(getSymbolData(scopeNode, id)).fullId();
-            printNode.setFullId(fullId);
         }
-        else if (node instanceof Node.If ifNode) {
-            Node scopeNode = ifNode.getParent();
-            if (!checkExpression(scopeNode, ifNode.getExpression(), null)) {
-                return false;
-            }
+        return count;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public Symbols getSymbols() {
+        return symbols;
+    }
+
+    // Checks the nodes stored in [from, to), which are whole blocks or the inside of one
+    private class BlockAnalysis extends RecursiveTask<Boolean> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        private final int from, to;
+        private final transient SymbolTable symbolTable;
+        private final transient AtomicBoolean failed;
+        private int nextSymbol, relationalOperatorCount;
+
+        private BlockAnalysis(int from, int to, int firstSymbol, SymbolTable symbolTable, AtomicBoolean failed) {
+            this.from = from;
+            this.to = to;
+            this.symbolTable = symbolTable;
+            this.failed = failed;
+            nextSymbol = firstSymbol;
         }
-        else if (node instanceof Node.While whileNode) {
-            Node scopeNode = whileNode.getParent();
-            if (!checkExpression(scopeNode, whileNode.getExpression(), null)) {
-                return false;
+
+        @Override
+        protected Boolean compute() {
+            List<BlockAnalysis> forked = new ArrayList<>();
+            boolean result = analyze(forked);
+            if (!result) {
+                failed.set(true);
+            }
+            for (BlockAnalysis analysis : forked) {
+                result &= analysis.join();
             }
+            return result;
         }
-        if (node.isBlockNode()) {
-            for (Node child : node.getChildren()) {
-                if (!analyze(child, level + 1)) {
+
+        // Large blocks are forked into their own analysis when forked is not null
+        private boolean analyze(List<BlockAnalysis> forked) {
+            for (int node = from; node < to; node++) {
+                if (failed != null && failed.get()) {
                     return false;
                 }
+                while (symbolTable.getCurrentScope() != syntaxTree.getParent(node)) {
+                    symbolTable.exitScope();
+                }
+                if (!analyze(node)) {
+                    return false;
+                }
+                if (syntaxTree.getFirstChild(node) == -1) {
+                    continue;
+                }
+                int end = syntaxTree.getSubtreeEnd(node);
+                if (forked != null && end - node >= PARALLEL_THRESHOLD && to - end >= PARALLEL_THRESHOLD) {
+                    SymbolTable blockSymbolTable = new SymbolTable(symbolTable);
+                    blockSymbolTable.enterScope(node);
+                    BlockAnalysis analysis = new BlockAnalysis(node + 1, end, nextSymbol, blockSymbolTable, failed);
+                    analysis.fork();
+                    forked.add(analysis);
+                    nextSymbol += countDeclarations(node + 1, end);
+                    node = end - 1;
+                }
+                else {
+                    symbolTable.enterScope(node);
+                }
             }
-        }
-        return true;
-    }
-
-    private boolean checkExistenceOfSymbol(Node node, String id) {
-        if (node.getSymbolTable().hasSymbol(id)) {
             return true;
         }
-        if (node.getParent() != null) {
-            return checkExistenceOfSymbol(node.getParent(), id);
-        }
-        return false;
-    }
-
-    private SymbolData getSymbolData(Node node, String id) {
-        if (node.getSymbolTable().hasSymbol(id)) {
-            return node.getSymbolTable().getSymbol(id);
-        }
-        if (node.getParent() != null) {
-            return getSymbolData(node.getParent(), id);
-        }
-        return null;
-    }
 
-    private boolean checkExpression(Node node, ArrayList<TokenTuple> expression, Token dataTypeOfVariable) {
-        boolean hasNumber = false;
-        boolean hasBoolean = false;
-        boolean hasString = false;
-        boolean hasRelationalOperator = false;
-        boolean hasEqualityOperator = false;
-        int operatorCount = 0;
-        for (TokenTuple tokenTuple : expression) {
-            if (tokenTuple.getToken() == Token.IDENTIFIER) {
-                if (!checkExistenceOfSymbol(node, tokenTuple.getId())) {
+        private boolean analyze(int node) {
+            NodeKind kind = syntaxTree.getKind(node);
+            if (kind == NodeKind.DECLARATION) {
+                int id = syntaxTree.getIdentifier(node);
+                Token dataType = syntaxTree.getDataType(node);
+                int position = syntaxTree.getBegin(node);
+                if (symbolTable.hasSymbol(id)) {
                     return false;
                 }
-                SymbolData symbolData = Objects.requireNonNull(getSymbolData(node, tokenTuple.getId()));
-                Token dataType = symbolData.dataType();
-                tokenTuple.setFullId(symbolData.fullId());
-                if (dataType == Token.INT) {
-                    hasNumber = true;
+                String name = syntaxTree.getIdentifiers().getName(id);
+                int symbol = nextSymbol++;
+                symbols.set(symbol, dataType, position, name + "_" + position);
+                symbolTable.addSymbol(id, symbol);
+                syntaxTree.setSymbol(node, symbol);
+            }
+            else if (kind == NodeKind.ASSIGNMENT) {
+                int symbol = symbolTable.getSymbol(syntaxTree.getIdentifier(node));
+                if (symbol == -1) {
+                    return false;
                 }
-                else if (dataType == Token.BOOLEAN) {
-                    hasBoolean = true;
+                syntaxTree.setSymbol(node, symbol);
+                if (!checkExpression(syntaxTree.getExpression(node), symbols.getDataType(symbol))) {
+                    return false;
                 }
-                else if (dataType == Token.STRING) {
-                    hasString = true;
+            }
+            else if (kind == NodeKind.SCAN || kind == NodeKind.PRINT) {
+                int symbol = symbolTable.getSymbol(syntaxTree.getIdentifier(node));
+                if (symbol == -1) {
+                    return false;
                 }
+                syntaxTree.setSymbol(node, symbol);
             }
-            if (tokenTuple.getToken() == Token.NUMBER) {
-                hasNumber = true;
+            else if (kind == NodeKind.IF || kind == NodeKind.WHILE) {
+                if (!checkExpression(syntaxTree.getExpression(node), null)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean checkExpression(Expression expression, Token dataTypeOfVariable) {
+            relationalOperatorCount = 0;
+            Token dataType = getDataType(expression);
+            if (dataType == null) {
+                return false;
             }
-            else if (tokenTuple.getToken() == Token.TRUE || tokenTuple.getToken() == Token.FALSE) {
-                hasBoolean = true;
+            if (dataTypeOfVariable != null) {
+                return relationalOperatorCount == 0 && dataType == dataTypeOfVariable;
             }
-            else if (tokenTuple.getToken() == Token.STRING_VALUE) {
-                hasString = true;
+            return relationalOperatorCount == 1 && expression instanceof Expression.Binary binary
+                    && binary.getOperator().is(TokenClass.RELATIONAL_OPERATOR);
+        }
+
+        private Token getDataType(Expression expression) {
+            if (!(expression instanceof Expression.Binary)) {
+                return getOperandDataType(expression);
             }
-            else if (tokenTuple.getToken() == Token.LESS || tokenTuple.getToken() == Token.LESS_EQ
-                    || tokenTuple.getToken() == Token.GREATER || tokenTuple.getToken() == Token.GREATER_EQ
-            ) {
-                hasRelationalOperator = true;
-                operatorCount++;
+            ArrayList<Expression.Binary> operations = new ArrayList<>();
+            while (expression instanceof Expression.Binary binary) {
+                operations.add(binary);
+                expression = binary.getLeft();
             }
-            else if (tokenTuple.getToken() == Token.EQUALS || tokenTuple.getToken() == Token.DIFFERENT) {
-                hasEqualityOperator = true;
-                hasRelationalOperator = true;
-                operatorCount++;
+            Token dataType = getOperandDataType(expression);
+            for (int i = operations.size() - 1; i >= 0 && dataType != null; i--) {
+                Expression.Binary binary = operations.get(i);
+                Token rightDataType = getDataType(binary.getRight());
+                dataType = getResultDataType(binary.getOperator(), dataType, rightDataType);
             }
+            return dataType;
         }
-        boolean isIntExpression = hasNumber && !hasBoolean && !hasString;
-        boolean isBooleanExpression = hasBoolean && !hasNumber && !hasString;
-        boolean isStringExpression = hasString && !hasNumber && !hasBoolean;
-        if (dataTypeOfVariable != null) {
-            if (hasEqualityOperator || hasRelationalOperator) {
-                return false;
+
+        // Variables are resolved to their symbol ids and literals to the values the code generators emit
+        private Token getOperandDataType(Expression expression) {
+            if (expression instanceof Expression.Variable variable) {
+                int symbol = symbolTable.getSymbol(variable.getIdentifier());
+                if (symbol == -1) {
+                    return null;
+                }
+                variable.setSymbol(symbol);
+                return symbols.getDataType(symbol);
             }
-            if (dataTypeOfVariable == Token.INT && isIntExpression) {
-                return true;
+            Expression.Literal literal = (Expression.Literal) expression;
+            Token token = literal.getToken();
+            if (token == Token.NUMBER) {
+                literal.setConstant(getNumber(literal.getValue()));
+                return Token.INT;
             }
-            if (dataTypeOfVariable == Token.BOOLEAN && isBooleanExpression && operatorCount == 0) {
-                return true;
+            if (token.is(TokenClass.BOOLEAN_LITERAL)) {
+                literal.setConstant(token == Token.TRUE ? 1 : 0);
+                return Token.BOOLEAN;
             }
-            if (dataTypeOfVariable == Token.STRING && isStringExpression && operatorCount == 0) {
-                return true;
+            return Token.STRING;
+        }
+
+        // Numbers too large for an int are kept at the largest one, which no 16-bit operand can hold either
+        private int getNumber(String digits) {
+            long number = 0;
+            for (int i = 0; i < digits.length() && number <= Integer.MAX_VALUE; i++) {
+                number = number * 10 + digits.charAt(i) - '0';
             }
+            return (int) Math.min(number, Integer.MAX_VALUE);
         }
-        else {
-            if (isIntExpression && hasRelationalOperator && operatorCount == 1) {
-                return true;
+
+        private Token getResultDataType(Token operator, Token leftDataType, Token rightDataType) {
+            if (leftDataType == null || rightDataType == null) {
+                return null;
             }
-            if (isBooleanExpression && hasEqualityOperator && operatorCount == 1) {
-                return true;
+            if (operator.is(TokenClass.ARITHMETIC_OPERATOR)) {
+                return leftDataType == Token.INT && rightDataType == Token.INT ? Token.INT : null;
             }
-            if (isStringExpression && hasEqualityOperator && operatorCount == 1) {
-                return true;
+            boolean isValid = operator.is(TokenClass.EQUALITY_OPERATOR)
+                    ? leftDataType == rightDataType
+                    : leftDataType == Token.INT && rightDataType == Token.INT;
+            if (!isValid) {
+                return null;
             }
+            relationalOperatorCount++;
+            return Token.BOOLEAN;
         }
-        return false;
-    }
-
-    public HashMap<String, SymbolData> getSymbolDataMap() {
-        return symbolDataMap;
     }
 }
@@ -1,57 +1,556 @@
 package SyntacticAnalysis;
 
+import Utilities.IdentifierPool;
+import Utilities.Serialization;
+import Utilities.Token;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
 public class AbstractSyntaxTree {
-    private final Node root;
-    private Node currentNode;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final NodeKind[] NODE_KINDS = NodeKind.values();
+    private static final Token[] TOKENS = Token.values();
+    private static final byte EXPRESSION_BINARY = 0, EXPRESSION_VARIABLE = 1, EXPRESSION_LITERAL = 2;
+    private final IdentifierPool identifiers;
+    private byte[] kinds;
+    private int[] begins, ends, parents, firstChildren, nextSiblings, payloads, identifierIds, symbols;
+    private int[] lastChildren;
+    private Expression[] expressions;
+    private int size, expressionCount, currentNode;
 
-    public AbstractSyntaxTree(Node root) {
-        this.root = root;
-        currentNode = root;
+    public AbstractSyntaxTree(int begin, IdentifierPool identifiers) {
+        this.identifiers = identifiers;
+        kinds = new byte[INITIAL_CAPACITY];
+        begins = new int[INITIAL_CAPACITY];
+        ends = new int[INITIAL_CAPACITY];
+        parents = new int[INITIAL_CAPACITY];
+        firstChildren = new int[INITIAL_CAPACITY];
+        nextSiblings = new int[INITIAL_CAPACITY];
+        payloads = new int[INITIAL_CAPACITY];
+        identifierIds = new int[INITIAL_CAPACITY];
+        symbols = new int[INITIAL_CAPACITY];
+        lastChildren = new int[INITIAL_CAPACITY];
+        expressions = new Expression[INITIAL_CAPACITY];
+        size = 0;
+        expressionCount = 0;
+        currentNode = addNode(NodeKind.CODE, begin, -1);
     }
 
-    public void addChild(Node node, boolean isNewLevel) {
-        currentNode.addChild(node);
+    public int addChild(NodeKind kind, int begin, boolean isNewLevel) {
+        int node = addNode(kind, begin, currentNode);
+        if (lastChildren[currentNode] == -1) {
+            firstChildren[currentNode] = node;
+        }
+        else {
+            nextSiblings[lastChildren[currentNode]] = node;
+        }
+        lastChildren[currentNode] = node;
         if (isNewLevel) {
             currentNode = node;
         }
+        return node;
     }
 
-    public void removeChild() {
-        currentNode.getChildren().removeLast();
+    private int addNode(NodeKind kind, int begin, int parent) {
+        if (size == kinds.length) {
+            grow(size * 2);
+        }
+        kinds[size] = (byte) kind.ordinal();
+        begins[size] = begin;
+        ends[size] = begin;
+        parents[size] = parent;
+        firstChildren[size] = -1;
+        nextSiblings[size] = -1;
+        payloads[size] = -1;
+        identifierIds[size] = -1;
+        symbols[size] = -1;
+        lastChildren[size] = -1;
+        return size++;
     }
 
     public void toParent() {
-        if (currentNode.getParent() != null) {
-            currentNode = currentNode.getParent();
+        if (parents[currentNode] != -1) {
+            currentNode = parents[currentNode];
         }
     }
 
-    public Node getRoot() {
-        return root;
+    public void trimToSize() {
+        grow(size);
+        expressions = Arrays.copyOf(expressions, expressionCount);
+        lastChildren = null;
+    }
+
+    private void grow(int capacity) {
+        kinds = Arrays.copyOf(kinds, capacity);
+        begins = Arrays.copyOf(begins, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        payloads = Arrays.copyOf(payloads, capacity);
+        identifierIds = Arrays.copyOf(identifierIds, capacity);
+        symbols = Arrays.copyOf(symbols, capacity);
+        if (lastChildren != null) {
+            lastChildren = Arrays.copyOf(lastChildren, capacity);
+        }
     }
 
-    public Node getCurrentNode() {
+    public int getRoot() {
+        return 0;
+    }
+
+    public int getCurrentNode() {
         return currentNode;
     }
 
-    public void setCurrentNode(Node currentNode) {
-        this.currentNode = currentNode;
+    public int size() {
+        return size;
+    }
+
+    public IdentifierPool getIdentifiers() {
+        return identifiers;
+    }
+
+    public NodeKind getKind(int node) {
+        return NODE_KINDS[kinds[node]];
+    }
+
+    public int getBegin(int node) {
+        return begins[node];
+    }
+
+    public int getEnd(int node) {
+        return ends[node];
+    }
+
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    public int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    public int getIdentifier(int node) {
+        return identifierIds[node];
+    }
+
+    public int getSymbol(int node) {
+        return symbols[node];
+    }
+
+    public Token getDataType(int node) {
+        return TOKENS[payloads[node]];
+    }
+
+    public Expression getExpression(int node) {
+        return expressions[payloads[node]];
+    }
+
+    public void setKind(int node, NodeKind kind) {
+        kinds[node] = (byte) kind.ordinal();
+    }
+
+    public void setEnd(int node, int end) {
+        ends[node] = end;
+    }
+
+    public void setIdentifier(int node, int identifier) {
+        identifierIds[node] = identifier;
+    }
+
+    public void setSymbol(int node, int symbol) {
+        symbols[node] = symbol;
+    }
+
+    public void setDataType(int node, Token dataType) {
+        payloads[node] = dataType.ordinal();
+    }
+
+    public void setExpression(int node, Expression expression) {
+        if (expressionCount == expressions.length) {
+            expressions = Arrays.copyOf(expressions, expressionCount * 2);
+        }
+        expressions[expressionCount] = expression;
+        payloads[node] = expressionCount++;
+    }
+
+    // Nodes are stored in document order, so their first tokens are sorted and can be binary searched
+    public int findNode(int token) {
+        int low = 0, high = size - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (begins[middle] <= token) {
+                low = middle;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    public int getSubtreeEnd(int node) {
+        for (; node != -1; node = parents[node]) {
+            if (nextSiblings[node] != -1) {
+                return nextSiblings[node];
+            }
+        }
+        return size;
+    }
+
+    // Replaces the children of parent stored in [from, to) with the children of the replacement root.
+    // Every node after them moves by the difference in nodes and its tokens by tokenShift.
+    public void replaceChildren(int parent, int from, int to, AbstractSyntaxTree replacement, int tokenShift) {
+        int count = replacement.size - 1;
+        int nodeShift = count - (to - from);
+        int previous = from - 1;
+        while (previous != parent && parents[previous] != parent) {
+            previous = parents[previous];
+        }
+        int following = to < size && parents[to] == parent ? to + nodeShift : -1;
+        int[] freeExpressions = new int[to - from];
+        int freeCount = 0;
+        for (int node = from; node < to; node++) {
+            if (hasExpression(node)) {
+                expressions[payloads[node]] = null;
+                freeExpressions[freeCount++] = payloads[node];
+            }
+        }
+        if (nodeShift != 0) {
+            if (size + nodeShift > kinds.length) {
+                grow(Math.max(size + nodeShift, kinds.length * 2));
+            }
+            moveNodes(to, to + nodeShift, size - to);
+            size += nodeShift;
+            for (int node = from + count; node < size; node++) {
+                parents[node] = shiftIndex(parents[node], to, nodeShift);
+                firstChildren[node] = shiftIndex(firstChildren[node], to, nodeShift);
+                nextSiblings[node] = shiftIndex(nextSiblings[node], to, nodeShift);
+            }
+            // Before the replaced nodes, only the ancestors can link to a node after them
+            for (int node = parent; node != -1; node = parents[node]) {
+                nextSiblings[node] = shiftIndex(nextSiblings[node], to, nodeShift);
+            }
+        }
+        if (tokenShift != 0) {
+            for (int node = from + count; node < size; node++) {
+                begins[node] += tokenShift;
+                ends[node] += tokenShift;
+            }
+            for (int node = parent; node != -1; node = parents[node]) {
+                ends[node] += tokenShift;
+            }
+        }
+        int reusedCount = 0;
+        for (int i = 1; i <= count; i++) {
+            int node = from + i - 1;
+            kinds[node] = replacement.kinds[i];
+            begins[node] = replacement.begins[i];
+            ends[node] = replacement.ends[i];
+            parents[node] = replacement.parents[i] == 0 ? parent : replacement.parents[i] + from - 1;
+            firstChildren[node] = replacement.firstChildren[i] == -1 ? -1 : replacement.firstChildren[i] + from - 1;
+            if (replacement.nextSiblings[i] != -1) {
+                nextSiblings[node] = replacement.nextSiblings[i] + from - 1;
+            }
+            else {
+                nextSiblings[node] = replacement.parents[i] == 0 ? following : -1;
+            }
+            payloads[node] = replacement.payloads[i];
+            if (hasExpression(node)) {
+                Expression expression = replacement.expressions[replacement.payloads[i]];
+                if (reusedCount < freeCount) {
+                    payloads[node] = freeExpressions[reusedCount++];
+                    expressions[payloads[node]] = expression;
+                }
+                else {
+                    setExpression(node, expression);
+                }
+            }
+            identifierIds[node] = replacement.identifierIds[i];
+            symbols[node] = -1;
+        }
+        int first = count > 0 ? from : following;
+        if (previous == parent) {
+            firstChildren[parent] = first;
+        }
+        else {
+            nextSiblings[previous] = first;
+        }
+        if (reusedCount < freeCount) {
+            compactExpressions();
+        }
+    }
+
+    // Takes out the slots no node uses, keeping the expressions in node order
+    private void compactExpressions() {
+        Expression[] compacted = new Expression[expressions.length];
+        int count = 0;
+        for (int node = 0; node < size; node++) {
+            if (hasExpression(node)) {
+                compacted[count] = expressions[payloads[node]];
+                payloads[node] = count++;
+            }
+        }
+        expressions = compacted;
+        expressionCount = count;
+    }
+
+    private boolean hasExpression(int node) {
+        NodeKind kind = NODE_KINDS[kinds[node]];
+        return kind == NodeKind.ASSIGNMENT || kind == NodeKind.IF || kind == NodeKind.WHILE;
+    }
+
+    private void moveNodes(int from, int to, int length) {
+        System.arraycopy(kinds, from, kinds, to, length);
+        System.arraycopy(begins, from, begins, to, length);
+        System.arraycopy(ends, from, ends, to, length);
+        System.arraycopy(parents, from, parents, to, length);
+        System.arraycopy(firstChildren, from, firstChildren, to, length);
+        System.arraycopy(nextSiblings, from, nextSiblings, to, length);
+        System.arraycopy(payloads, from, payloads, to, length);
+        System.arraycopy(identifierIds, from, identifierIds, to, length);
+        System.arraycopy(symbols, from, symbols, to, length);
+    }
+
+    private static int shiftIndex(int node, int from, int shift) {
+        return node >= from ? node + shift : node;
+    }
+
+    // Links are written as the distance back to the parent and forward to the child or sibling, and positions as
+    // the distance to the previous node, so most of them fit in one byte
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        out.write(kinds, 0, size);
+        int[][] columns = new int[8][size];
+        for (int node = 0; node < size; node++) {
+            columns[0][node] = begins[node] - (node > 0 ? begins[node - 1] : 0);
+            columns[1][node] = ends[node] - begins[node];
+            columns[2][node] = parents[node] == -1 ? 0 : node - parents[node];
+            columns[3][node] = firstChildren[node] == -1 ? 0 : firstChildren[node] - node;
+            columns[4][node] = nextSiblings[node] == -1 ? 0 : nextSiblings[node] - node;
+            columns[5][node] = payloads[node] + 1;
+            columns[6][node] = identifierIds[node] + 1;
+            columns[7][node] = symbols[node] + 1;
+        }
+        for (int[] column : columns) {
+            Serialization.writeVarInts(out, column, size);
+        }
+        out.writeInt(expressionCount);
+        for (int i = 0; i < expressionCount; i++) {
+            writeExpression(out, expressions[i]);
+        }
+    }
+
+    // Expressions are written in postfix order so that deep ones are read back without recursion
+    private static void writeExpression(DataOutputStream out, Expression expression) throws IOException {
+        ArrayList<Expression> postfix = new ArrayList<>();
+        ArrayList<Expression> pending = new ArrayList<>();
+        if (expression != null) {
+            pending.add(expression);
+        }
+        while (!pending.isEmpty()) {
+            Expression next = pending.removeLast();
+            postfix.add(next);
+            if (next instanceof Expression.Binary binary) {
+                pending.add(binary.getLeft());
+                pending.add(binary.getRight());
+            }
+        }
+        Serialization.writeVarInt(out, postfix.size());
+        for (int i = postfix.size() - 1; i >= 0; i--) {
+            Expression next = postfix.get(i);
+            if (next instanceof Expression.Binary binary) {
+                out.writeByte(EXPRESSION_BINARY);
+                out.writeByte(binary.getOperator().ordinal());
+            }
+            else if (next instanceof Expression.Variable variable) {
+                out.writeByte(EXPRESSION_VARIABLE);
+                Serialization.writeVarInt(out, variable.getIdentifier());
+                Serialization.writeVarInt(out, variable.getSymbol() + 1);
+            }
+            else {
+                Expression.Literal literal = (Expression.Literal) next;
+                out.writeByte(EXPRESSION_LITERAL);
+                out.writeByte(literal.getToken().ordinal());
+                Serialization.writeString(out, literal.getValue());
+                Serialization.writeVarInt(out, literal.getConstant());
+            }
+        }
+    }
+
+    public static AbstractSyntaxTree read(ByteBuffer in, IdentifierPool identifiers) {
+        AbstractSyntaxTree syntaxTree = new AbstractSyntaxTree(0, identifiers);
+        int size = in.getInt();
+        syntaxTree.kinds = new byte[size];
+        in.get(syntaxTree.kinds);
+        int[] begins = Serialization.readVarInts(in, size), ends = Serialization.readVarInts(in, size);
+        int[] parents = Serialization.readVarInts(in, size), firstChildren = Serialization.readVarInts(in, size);
+        int[] nextSiblings = Serialization.readVarInts(in, size), payloads = Serialization.readVarInts(in, size);
+        int[] identifierIds = Serialization.readVarInts(in, size), symbols = Serialization.readVarInts(in, size);
+        for (int node = 0; node < size; node++) {
+            begins[node] += node > 0 ? begins[node - 1] : 0;
+            ends[node] += begins[node];
+            parents[node] = parents[node] == 0 ? -1 : node - parents[node];
+            firstChildren[node] = firstChildren[node] == 0 ? -1 : node + firstChildren[node];
+            nextSiblings[node] = nextSiblings[node] == 0 ? -1 : node + nextSiblings[node];
+            payloads[node]--;
+            identifierIds[node]--;
+            symbols[node]--;
+        }
+        syntaxTree.begins = begins;
+        syntaxTree.ends = ends;
+        syntaxTree.parents = parents;
+        syntaxTree.firstChildren = firstChildren;
+        syntaxTree.nextSiblings = nextSiblings;
+        syntaxTree.payloads = payloads;
+        syntaxTree.identifierIds = identifierIds;
+        syntaxTree.symbols = symbols;
+        syntaxTree.size = size;
+        syntaxTree.expressionCount = in.getInt();
+        syntaxTree.expressions = new Expression[syntaxTree.expressionCount];
+        for (int i = 0; i < syntaxTree.expressionCount; i++) {
+            syntaxTree.expressions[i] = readExpression(in);
+        }
+        syntaxTree.lastChildren = null;
+        return syntaxTree;
+    }
+
+    private static Expression readExpression(ByteBuffer in) {
+        int count = Serialization.readVarInt(in);
+        ArrayList<Expression> operands = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte tag = in.get();
+            if (tag == EXPRESSION_BINARY) {
+                Token operator = TOKENS[in.get()];
+                Expression right = operands.removeLast();
+                Expression left = operands.removeLast();
+                operands.add(new Expression.Binary(operator, left, right));
+            }
+            else if (tag == EXPRESSION_VARIABLE) {
+                Expression.Variable variable = new Expression.Variable(Serialization.readVarInt(in));
+                variable.setSymbol(Serialization.readVarInt(in) - 1);
+                operands.add(variable);
+            }
+            else {
+                Expression.Literal literal = new Expression.Literal(TOKENS[in.get()], Serialization.readString(in));
+                literal.setConstant(Serialization.readVarInt(in));
+                operands.add(literal);
+            }
+        }
+        return count == 0 ? null : operands.getFirst();
+    }
+
+    public Cursor getCursor() {
+        return new Cursor();
     }
 
     public void print() {
-        print(root, 0);
+        Cursor cursor = getCursor();
+        do {
+            int level = 0;
+            for (int node = cursor.getNode(); parents[node] != -1; node = parents[node]) {
+                level++;
+            }
+            System.out.println("\t".repeat(level) + cursor.getKind() + " " + getName(cursor.getIdentifier())
+                    + " " + cursor.getBegin() + " " + cursor.getEnd() + " " + parents[cursor.getNode()]);
+        } while (cursor.next());
+    }
+
+    private String getName(int identifier) {
+        return identifier == -1 ? null : identifiers.getName(identifier);
     }
 
-    private void print(Node node, int level) {
-        for (int i = 0; i < level; i++) {
-            System.out.print("\t");
+    public class Cursor {
+        private int node;
+
+        private Cursor() {
+            node = 0;
+        }
+
+        public int getNode() {
+            return node;
+        }
+
+        public void moveTo(int node) {
+            this.node = node;
+        }
+
+        public boolean toFirstChild() {
+            if (firstChildren[node] == -1) {
+                return false;
+            }
+            node = firstChildren[node];
+            return true;
+        }
+
+        public boolean toNextSibling() {
+            if (nextSiblings[node] == -1) {
+                return false;
+            }
+            node = nextSiblings[node];
+            return true;
+        }
+
+        public boolean toParent() {
+            if (parents[node] == -1) {
+                return false;
+            }
+            node = parents[node];
+            return true;
+        }
+
+        // Moves to the next node in document order, which is also the order nodes are stored in
+        public boolean next() {
+            if (node + 1 == size) {
+                return false;
+            }
+            node++;
+            return true;
+        }
+
+        public NodeKind getKind() {
+            return AbstractSyntaxTree.this.getKind(node);
+        }
+
+        public int getBegin() {
+            return begins[node];
+        }
+
+        public int getEnd() {
+            return ends[node];
+        }
+
+        public int getParent() {
+            return parents[node];
         }
-        System.out.println(node.getClass() + " " + node.getId() + " " + node.getBegin() + " " + node.getEnd() + " " + node.getParent());
-        if (!node.isBlockNode()) {
-            return;
+
+        public int getIdentifier() {
+            return identifierIds[node];
         }
-        for (Node child : node.getChildren()) {
-            print(child, level + 1);
+
+        public int getSymbol() {
+            return symbols[node];
+        }
+
+        public void setSymbol(int symbol) {
+            symbols[node] = symbol;
+        }
+
+        public Token getDataType() {
+            return AbstractSyntaxTree.this.getDataType(node);
+        }
+
+        public Expression getExpression() {
+            return AbstractSyntaxTree.this.getExpression(node);
         }
     }
 }
@@ -2,6 +2,76 @@ package SyntacticAnalysis;
 
 import Utilities.Token;
 
-public interface Expression {
-    void addToExpression(String id, Token token);
-}
\ No newline at end of file
+public abstract class Expression {
+    public static class Binary extends Expression {
+        private final Token operator;
+        private final Expression left, right;
+
+        public Binary(Token operator, Expression left, Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        public Token getOperator() {
+            return operator;
+        }
+
+        public Expression getLeft() {
+            return left;
+        }
+
+        public Expression getRight() {
+            return right;
+        }
+    }
+
+    public static class Literal extends Expression {
+        private final Token token;
+        private final String value;
+        private int constant;
+
+        public Literal(Token token, String value) {
+            this.token = token;
+            this.value = value;
+        }
+
+        public Token getToken() {
+            return token;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public int getConstant() {
+            return constant;
+        }
+
+        public void setConstant(int constant) {
+            this.constant = constant;
+        }
+    }
+
+    public static class Variable extends Expression {
+        private final int identifier;
+        private int symbol;
+
+        public Variable(int identifier) {
+            this.identifier = identifier;
+            this.symbol = -1;
+        }
+
+        public int getIdentifier() {
+            return identifier;
+        }
+
+        public int getSymbol() {
+            return symbol;
+        }
+
+        public void setSymbol(int symbol) {
+            this.symbol = symbol;
+        }
+    }
+}
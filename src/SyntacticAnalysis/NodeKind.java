@@ -0,0 +1,9 @@
+package SyntacticAnalysis;
+
+public enum NodeKind {
+    CODE, DECLARATION, ASSIGNMENT, SCAN, PRINT, IF, WHILE, ERROR;
+
+    public boolean isBlock() {
+        return this == CODE || this == IF || this == WHILE;
+    }
+}
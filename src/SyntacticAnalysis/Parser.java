@@ -1,292 +1,336 @@
 package SyntacticAnalysis;
 
+import LexicalAnalysis.TokenEdit;
+import LexicalAnalysis.TokenStream;
+import Utilities.Diagnostic;
 import Utilities.Token;
+import Utilities.TokenClass;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class Parser {
-    private static int ERROR;
-    private Token[] tokens;
-    private String[] strings;
-    private int numTokens;
+    private enum Production {
+        DECLARATION, ASSIGNMENT, SCAN_OR_PRINT, IF_OR_WHILE
+    }
+
+    private static final Production[] FIRST_SETS = new Production[Token.values().length];
+    private static final int ERROR = -1;
+    private TokenStream tokenStream;
     private AbstractSyntaxTree syntaxTree;
+    private Expression expression;
+    private ArrayList<Diagnostic> errors;
+    private int errorPosition;
 
-    public Parser() {
-        ERROR = -1;
+    static {
+        FIRST_SETS[Token.INT.ordinal()] = Production.DECLARATION;
+        FIRST_SETS[Token.BOOLEAN.ordinal()] = Production.DECLARATION;
+        FIRST_SETS[Token.STRING.ordinal()] = Production.DECLARATION;
+        FIRST_SETS[Token.IDENTIFIER.ordinal()] = Production.ASSIGNMENT;
+        FIRST_SETS[Token.SCAN.ordinal()] = Production.SCAN_OR_PRINT;
+        FIRST_SETS[Token.PRINT.ordinal()] = Production.SCAN_OR_PRINT;
+        FIRST_SETS[Token.IF.ordinal()] = Production.IF_OR_WHILE;
+        FIRST_SETS[Token.WHILE.ordinal()] = Production.IF_OR_WHILE;
     }
 
-    public void initialize(ArrayList<Token> tokens, ArrayList<String> strings) {
-        this.tokens = new Token[tokens.size()];
-        this.strings = new String[strings.size()];
-        for (int i = 0; i < tokens.size(); i++) {
-            this.tokens[i] = tokens.get(i);
-            this.strings[i] = strings.get(i);
-        }
-        numTokens = tokens.size();
+    public void initialize(TokenStream tokenStream) {
+        this.tokenStream = tokenStream;
+    }
+
+    public void load(AbstractSyntaxTree syntaxTree, List<Diagnostic> errors) {
+        this.syntaxTree = syntaxTree;
+        this.errors = new ArrayList<>(errors);
     }
 
     public boolean parse() {
         int i = 0;
-        Node.Code node = new Node.Code(i);
-        syntaxTree = new AbstractSyntaxTree(node);
-        if (outOfBounds(i) || tokens[i] != Token.CODE) {
+        syntaxTree = new AbstractSyntaxTree(i, tokenStream.getIdentifiers());
+        errors = new ArrayList<>();
+        int node = syntaxTree.getRoot();
+        if (outOfBounds(i) || getToken(i) != Token.CODE) {
+            error(i, "Expected 'code'");
             return false;
         }
         i++;
-        if (outOfBounds(i) || tokens[i] != Token.IDENTIFIER) {
+        if (outOfBounds(i) || getToken(i) != Token.IDENTIFIER) {
+            error(i, "Expected identifier");
             return false;
         }
-        node.setId(strings[i]);
+        syntaxTree.setIdentifier(node, tokenStream.getIdentifier(i));
         i++;
-        if (outOfBounds(i) || tokens[i] != Token.OP_CURLY) {
+        if (outOfBounds(i) || getToken(i) != Token.OP_CURLY) {
+            error(i, "Expected '{'");
             return false;
         }
         i++;
-        int ii = checkInstructions(i);
-        if (ii != ERROR) {
-            i = ii;
-        }
-        if (outOfBounds(i) || tokens[i] != Token.CL_CURLY) {
-            return false;
-        }
-        node.setEnd(i);
+        checkInstructions(i, -1);
+        syntaxTree.trimToSize();
+        return errors.isEmpty();
+    }
+
+    // Parses again only the statements touched by the edit, which must be the only change in the tokens since the
+    // last parse. Everything else in the tree is kept, and any edit that can not be isolated falls back to parse()
+    public boolean reparse(TokenEdit edit) {
+        if (syntaxTree == null || !errors.isEmpty()) {
+            return parse();
+        }
+        if (edit.isEmpty()) {
+            return true;
+        }
+        int from = edit.from(), to = from + edit.removedCount();
+        int block = syntaxTree.findNode(from);
+        while (block != -1 && !(syntaxTree.getKind(block).isBlock()
+                && getBodyBegin(block) <= from && to <= syntaxTree.getEnd(block))) {
+            block = syntaxTree.getParent(block);
+        }
+        if (block == -1) {
+            return parse();
+        }
+        int first = getChildAt(block, from);
+        int last = edit.removedCount() > 0 ? getChildAt(block, to - 1) : first;
+        int begin = first != -1 ? syntaxTree.getBegin(first) : from;
+        int end = (last != -1 ? syntaxTree.getEnd(last) + 1 : from) + edit.getShift();
+        AbstractSyntaxTree tree = syntaxTree;
+        syntaxTree = new AbstractSyntaxTree(begin, tokenStream.getIdentifiers());
+        int i = checkInstructions(begin, end);
+        AbstractSyntaxTree replacement = syntaxTree;
+        syntaxTree = tree;
+        if (i != end || !errors.isEmpty()) {
+            return parse();
+        }
+        int nodeBegin = first != -1 ? first : syntaxTree.getSubtreeEnd(block);
+        int nodeEnd = last != -1 ? syntaxTree.getSubtreeEnd(last) : nodeBegin;
+        syntaxTree.replaceChildren(block, nodeBegin, nodeEnd, replacement, edit.getShift());
         return true;
     }
 
-    private int checkInstructions(int i) {
-        int ii = checkInstruction(i);
-        if (ii == ERROR) {
-            return ERROR;
+    // The statements of a block start right after its '{'
+    private int getBodyBegin(int block) {
+        int child = syntaxTree.getFirstChild(block);
+        return child != -1 ? syntaxTree.getBegin(child) : syntaxTree.getEnd(block);
+    }
+
+    private int getChildAt(int block, int token) {
+        if (token >= syntaxTree.getEnd(block)) {
+            return -1;
         }
-        i = ii;
-        if (!outOfBounds(i) && isReservedWord(tokens[i])) {
-            ii = checkInstructions(i);
-            if (ii == ERROR) {
-                return ERROR;
+        int node = syntaxTree.findNode(token);
+        while (syntaxTree.getParent(node) != block) {
+            node = syntaxTree.getParent(node);
+        }
+        return node;
+    }
+
+    // Parses statements until the closing '}' of the outermost block, or until the stop token is reached
+    // at the outermost level when stop is not -1
+    private int checkInstructions(int i, int stop) {
+        while (!outOfBounds(i)) {
+            if (stop != -1 && i >= stop && syntaxTree.getCurrentNode() == syntaxTree.getRoot()) {
+                return i;
+            }
+            tokenStream.release(i);
+            Token token = getToken(i);
+            if (token == Token.CL_CURLY) {
+                int block = syntaxTree.getCurrentNode();
+                syntaxTree.setEnd(block, i);
+                if (block == syntaxTree.getRoot()) {
+                    return i;
+                }
+                syntaxTree.toParent();
+                i++;
+                continue;
+            }
+            int node = syntaxTree.size();
+            Production production = FIRST_SETS[token.ordinal()];
+            if (production == null) {
+                i = error(i, "Expected statement");
+            }
+            else {
+                i = switch (production) {
+                    case DECLARATION -> checkDeclaration(i);
+                    case ASSIGNMENT -> checkAssignment(i);
+                    case SCAN_OR_PRINT -> checkScanOrPrint(i);
+                    case IF_OR_WHILE -> checkIfOrWhile(i);
+                };
+            }
+            if (i == ERROR) {
+                i = recover(node);
             }
-            i = ii;
         }
+        error(i, "Expected '}'");
         return i;
     }
 
-    private int checkInstruction(int i) {
-        int ii = checkDeclaration(i);
-        if (ii != ERROR) {
-            return ii;
+    // Skips to the next ';' or '}' so parsing can continue after a syntax error.
+    // A broken if/while header also stops at '{' so that its body is still parsed as a block.
+    private int recover(int node) {
+        boolean isOpenBlock = node == syntaxTree.getCurrentNode();
+        if (node < syntaxTree.size()) {
+            syntaxTree.setKind(node, NodeKind.ERROR);
+        }
+        int i = errorPosition;
+        while (!outOfBounds(i) && getToken(i) != Token.SEMICOLON && getToken(i) != Token.CL_CURLY
+                && (!isOpenBlock || getToken(i) != Token.OP_CURLY)) {
+            i++;
         }
-        ii = checkAssignment(i);
-        if (ii != ERROR) {
-            return ii;
+        if (outOfBounds(i)) {
+            return i;
         }
-        ii = checkScanOrPrint(i);
-        if (ii != ERROR) {
-            return ii;
+        if (getToken(i) == Token.OP_CURLY) {
+            return i + 1;
         }
-        ii = checkIfOrWhile(i);
-        if (ii != ERROR) {
-            return ii;
+        if (isOpenBlock) {
+            syntaxTree.toParent();
         }
+        return getToken(i) == Token.SEMICOLON ? i + 1 : i;
+    }
+
+    private int error(int i, String message) {
+        String found = outOfBounds(i) ? "end of input" : "'" + getString(i) + "'";
+        errors.add(new Diagnostic(i, message + ", found " + found));
+        errorPosition = i;
         return ERROR;
     }
 
     private int checkDeclaration(int i) {
-        Node.Declaration node = new Node.Declaration(i);
-        syntaxTree.addChild(node, false);
-        if (outOfBounds(i) || !isDataType(tokens[i])) {
-            syntaxTree.removeChild();
-            return ERROR;
-        }
-        node.setDataType(tokens[i]);
+        int node = syntaxTree.addChild(NodeKind.DECLARATION, i, false);
+        syntaxTree.setDataType(node, getToken(i));
         i++;
-        if (outOfBounds(i) || tokens[i] != Token.IDENTIFIER) {
-            syntaxTree.removeChild();
-            return ERROR;
+        if (outOfBounds(i) || getToken(i) != Token.IDENTIFIER) {
+            return error(i, "Expected identifier");
         }
-        node.setId(strings[i]);
+        syntaxTree.setIdentifier(node, tokenStream.getIdentifier(i));
         i++;
-        if (outOfBounds(i) || tokens[i] != Token.SEMICOLON) {
-            syntaxTree.removeChild();
-            return ERROR;
+        if (outOfBounds(i) || getToken(i) != Token.SEMICOLON) {
+            return error(i, "Expected ';'");
         }
-        node.setEnd(i);
+        syntaxTree.setEnd(node, i);
         i++;
         return i;
     }
 
     private int checkAssignment(int i) {
-        Node.Assignment node = new Node.Assignment(i);
-        syntaxTree.addChild(node, false);
-        if (outOfBounds(i) || tokens[i] != Token.IDENTIFIER) {
-            syntaxTree.removeChild();
-            return ERROR;
-        }
-        node.setId(strings[i]);
+        int node = syntaxTree.addChild(NodeKind.ASSIGNMENT, i, false);
+        syntaxTree.setIdentifier(node, tokenStream.getIdentifier(i));
         i++;
-        if (outOfBounds(i) || tokens[i] != Token.ASSIGN) {
-            syntaxTree.removeChild();
-            return ERROR;
+        if (outOfBounds(i) || getToken(i) != Token.ASSIGN) {
+            return error(i, "Expected '='");
         }
         i++;
-        syntaxTree.setCurrentNode(node);
-        int ii = checkExpression(i);
-        if (ii == ERROR) {
-            syntaxTree.toParent();
-            syntaxTree.removeChild();
+        i = checkExpression(i);
+        if (i == ERROR) {
             return ERROR;
         }
-        syntaxTree.toParent();
-        i = ii;
-        if (outOfBounds(i) || tokens[i] != Token.SEMICOLON) {
-            syntaxTree.removeChild();
-            return ERROR;
+        syntaxTree.setExpression(node, expression);
+        if (outOfBounds(i) || getToken(i) != Token.SEMICOLON) {
+            return error(i, "Expected ';'");
         }
-        node.setEnd(i);
+        syntaxTree.setEnd(node, i);
         i++;
         return i;
     }
 
     private int checkScanOrPrint(int i) {
-        if (outOfBounds(i) || (tokens[i] != Token.SCAN && tokens[i] != Token.PRINT)) {
-            return ERROR;
-        }
-        Node node;
-        if (tokens[i] == Token.SCAN) {
-            node = new Node.Scan(i);
-        }
-        else {
-            node = new Node.Print(i);
-        }
-        syntaxTree.addChild(node, false);
+        NodeKind kind = getToken(i) == Token.SCAN ? NodeKind.SCAN : NodeKind.PRINT;
+        int node = syntaxTree.addChild(kind, i, false);
         i++;
-        if (outOfBounds(i) || tokens[i] != Token.OP_PAREN){
-            syntaxTree.removeChild();
-            return ERROR;
+        if (outOfBounds(i) || getToken(i) != Token.OP_PAREN) {
+            return error(i, "Expected '('");
         }
         i++;
-        if (outOfBounds(i) || tokens[i] != Token.IDENTIFIER){
-            syntaxTree.removeChild();
-            return ERROR;
+        if (outOfBounds(i) || getToken(i) != Token.IDENTIFIER) {
+            return error(i, "Expected identifier");
         }
-        node.setId(strings[i]);
+        syntaxTree.setIdentifier(node, tokenStream.getIdentifier(i));
         i++;
-        if (outOfBounds(i) || tokens[i] != Token.CL_PAREN){
-            syntaxTree.removeChild();
-            return ERROR;
+        if (outOfBounds(i) || getToken(i) != Token.CL_PAREN) {
+            return error(i, "Expected ')'");
         }
         i++;
-        if (outOfBounds(i) || tokens[i] != Token.SEMICOLON) {
-            syntaxTree.removeChild();
-            return ERROR;
+        if (outOfBounds(i) || getToken(i) != Token.SEMICOLON) {
+            return error(i, "Expected ';'");
         }
-        node.setEnd(i);
+        syntaxTree.setEnd(node, i);
         i++;
         return i;
     }
 
     private int checkIfOrWhile(int i) {
-        if (outOfBounds(i) || (tokens[i] != Token.IF && tokens[i] != Token.WHILE)) {
-            return ERROR;
-        }
-        Node node;
-        if (tokens[i] == Token.IF) {
-            node = new Node.If(i);
-        }
-        else {
-            node = new Node.While(i);
-        }
-        syntaxTree.addChild(node, true);
+        NodeKind kind = getToken(i) == Token.IF ? NodeKind.IF : NodeKind.WHILE;
+        int node = syntaxTree.addChild(kind, i, true);
         i++;
-        if (outOfBounds(i) || tokens[i] != Token.OP_PAREN) {
-            syntaxTree.toParent();
-            syntaxTree.removeChild();
-            return ERROR;
+        if (outOfBounds(i) || getToken(i) != Token.OP_PAREN) {
+            return error(i, "Expected '('");
         }
         i++;
-        int ii = checkExpression(i);
-        if (ii == ERROR) {
-            syntaxTree.toParent();
-            syntaxTree.removeChild();
+        i = checkExpression(i);
+        if (i == ERROR) {
             return ERROR;
         }
-        i = ii;
-        if (outOfBounds(i) || tokens[i] != Token.CL_PAREN) {
-            syntaxTree.toParent();
-            syntaxTree.removeChild();
-            return ERROR;
+        if (outOfBounds(i) || getToken(i) != Token.CL_PAREN) {
+            return error(i, "Expected ')'");
         }
+        syntaxTree.setExpression(node, expression);
         i++;
-        if (outOfBounds(i) || tokens[i] != Token.OP_CURLY) {
-            syntaxTree.toParent();
-            syntaxTree.removeChild();
-            return ERROR;
+        if (outOfBounds(i) || getToken(i) != Token.OP_CURLY) {
+            return error(i, "Expected '{'");
         }
         i++;
-        ii = checkInstructions(i);
-        if (ii != ERROR) {
-            i = ii;
-        }
-        if (outOfBounds(i) || tokens[i] != Token.CL_CURLY) {
-            syntaxTree.toParent();
-            syntaxTree.removeChild();
-            return ERROR;
-        }
-        node.setEnd(i);
-        syntaxTree.toParent();
-        i++;
         return i;
     }
 
     private int checkExpression(int i) {
-        if (outOfBounds(i) || (tokens[i] != Token.IDENTIFIER && !isValue(tokens[i]))) {
-            return ERROR;
+        return checkExpression(i, 1);
+    }
+
+    private int checkExpression(int i, int minimumPrecedence) {
+        if (outOfBounds(i) || (getToken(i) != Token.IDENTIFIER && !getToken(i).is(TokenClass.LITERAL))) {
+            return error(i, "Expected identifier or value");
+        }
+        Expression left;
+        if (getToken(i) == Token.IDENTIFIER) {
+            left = new Expression.Variable(tokenStream.getIdentifier(i));
         }
-        if (syntaxTree.getCurrentNode() instanceof Expression node) {
-            node.addToExpression(strings[i], tokens[i]);
+        else {
+            left = new Expression.Literal(getToken(i), getString(i));
         }
         i++;
-        if (!outOfBounds(i) && isOperator(tokens[i])) {
-            if (syntaxTree.getCurrentNode() instanceof Expression node) {
-                node.addToExpression(strings[i], tokens[i]);
-            }
-            i++;
-            int ii = checkExpression(i);
-            if (ii == ERROR) {
+        while (!outOfBounds(i) && getPrecedence(getToken(i)) >= minimumPrecedence) {
+            Token operator = getToken(i);
+            i = checkExpression(i + 1, getPrecedence(operator) + 1);
+            if (i == ERROR) {
                 return ERROR;
             }
-            i = ii;
+            left = new Expression.Binary(operator, left, expression);
         }
+        expression = left;
         return i;
     }
 
-    private boolean isDataType(Token token) {
-        return token == Token.INT || token == Token.BOOLEAN || token == Token.STRING;
-    }
-
-    private boolean isValue(Token token) {
-        return token == Token.NUMBER || token == Token.TRUE || token == Token.FALSE || token == Token.STRING_VALUE;
-    }
-
-    private boolean isOperator(Token token) {
-        return isArithmeticOperator(token) || isRelationalOperator(token);
+    private int getPrecedence(Token token) {
+        if (token.is(TokenClass.ARITHMETIC_OPERATOR)) {
+            return 2;
+        }
+        if (token.is(TokenClass.RELATIONAL_OPERATOR)) {
+            return 1;
+        }
+        return 0;
     }
 
-    private boolean isArithmeticOperator(Token token) {
-        return token == Token.PLUS || token == Token.MINUS;
+    private boolean outOfBounds(int i) {
+        return !tokenStream.hasToken(i);
     }
 
-    private boolean isRelationalOperator(Token token) {
-        return token == Token.LESS || token == Token.LESS_EQ
-                || token == Token.GREATER || token == Token.GREATER_EQ
-                || token == Token.EQUALS || token == Token.DIFFERENT;
+    private Token getToken(int i) {
+        return tokenStream.getToken(i);
     }
 
-    private boolean isReservedWord(Token token) {
-        return isDataType(token) || token == Token.IDENTIFIER || token == Token.SCAN
-                || token == Token.PRINT || token == Token.IF || token == Token.WHILE;
+    private String getString(int i) {
+        return tokenStream.getString(i);
     }
 
-    private boolean outOfBounds(int i) {
-        return i >= numTokens;
+    public List<Diagnostic> getErrors() {
+        return errors;
     }
 
     public AbstractSyntaxTree getSyntaxTree() {
@@ -1,46 +1,288 @@
 package SyntacticAnalysis;
 
+import Utilities.Symbols;
 import Utilities.Token;
-import Utilities.SymbolData;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 
+// A single table for every scope: each identifier points to its innermost binding, which links to the one it hides.
+// Scopes are not tables of their own, just a mark in the list of declarations that is undone when the block ends
 public class SymbolTable {
-    private final HashMap<String, SymbolData> symbols;
-    private static int currentOffset;
+    private static final int INITIAL_CAPACITY = 64;
+    // This first offset is after writing the template in binary code
+    public static final int FIRST_OFFSET = 23;
+    private static final Token[] LAYOUT_ORDER = {Token.INT, Token.STRING, Token.BOOLEAN};
+    private int[] innermostBindings;
+    private int[] bindings;
+    private int[] bindingIdentifiers, hiddenBindings, scopeStarts, scopeOwners;
+    private int bindingCount, scopeCount;
 
-    public SymbolTable() {
-        symbols = new HashMap<>();
-        // This first offset is after writing the template in binary code
-        currentOffset = 23;
+    public SymbolTable(int identifierCount) {
+        innermostBindings = new int[Math.max(identifierCount, 1)];
+        Arrays.fill(innermostBindings, -1);
+        bindings = new int[INITIAL_CAPACITY];
+        bindingIdentifiers = new int[INITIAL_CAPACITY];
+        hiddenBindings = new int[INITIAL_CAPACITY];
+        scopeStarts = new int[INITIAL_CAPACITY];
+        scopeOwners = new int[INITIAL_CAPACITY];
+        bindingCount = 0;
+        scopeCount = 0;
     }
 
-    public boolean hasSymbol(String id) {
-        return symbols.containsKey(id);
+    // A table with the same scopes and bindings, which can go on without changing the other one
+    public SymbolTable(SymbolTable other) {
+        innermostBindings = other.innermostBindings.clone();
+        bindings = other.bindings.clone();
+        bindingIdentifiers = other.bindingIdentifiers.clone();
+        hiddenBindings = other.hiddenBindings.clone();
+        scopeStarts = other.scopeStarts.clone();
+        scopeOwners = other.scopeOwners.clone();
+        bindingCount = other.bindingCount;
+        scopeCount = other.scopeCount;
     }
 
-    public SymbolData addSymbol(String id, Token dataType, int position) {
-        symbols.put(id, new SymbolData(dataType, position, id + "_" + position, currentOffset));
-        if (dataType == Token.INT) {
-            currentOffset += 2;
+    public void enterScope(int owner) {
+        if (scopeCount == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, scopeCount * 2);
+            scopeOwners = Arrays.copyOf(scopeOwners, scopeCount * 2);
         }
-        else if (dataType == Token.BOOLEAN) {
-            currentOffset++;
+        scopeStarts[scopeCount] = bindingCount;
+        scopeOwners[scopeCount++] = owner;
+    }
+
+    public void exitScope() {
+        int start = scopeStarts[--scopeCount];
+        while (bindingCount > start) {
+            bindingCount--;
+            innermostBindings[bindingIdentifiers[bindingCount]] = hiddenBindings[bindingCount];
         }
-        else if (dataType == Token.STRING) {
-            currentOffset += 100;
+    }
+
+    // The node whose block opened the innermost scope, or -1 outside of every scope
+    public int getCurrentScope() {
+        return scopeCount > 0 ? scopeOwners[scopeCount - 1] : -1;
+    }
+
+    public boolean hasSymbol(int identifier) {
+        return identifier < innermostBindings.length && innermostBindings[identifier] != -1;
+    }
+
+    public void addSymbol(int identifier, int symbol) {
+        if (identifier >= innermostBindings.length) {
+            int oldLength = innermostBindings.length;
+            innermostBindings = Arrays.copyOf(innermostBindings, Math.max(identifier + 1, oldLength * 2));
+            Arrays.fill(innermostBindings, oldLength, innermostBindings.length, -1);
         }
-        return symbols.get(id);
+        if (bindingCount == bindings.length) {
+            bindings = Arrays.copyOf(bindings, bindingCount * 2);
+            bindingIdentifiers = Arrays.copyOf(bindingIdentifiers, bindingCount * 2);
+            hiddenBindings = Arrays.copyOf(hiddenBindings, bindingCount * 2);
+        }
+        bindings[bindingCount] = symbol;
+        bindingIdentifiers[bindingCount] = identifier;
+        hiddenBindings[bindingCount] = innermostBindings[identifier];
+        innermostBindings[identifier] = bindingCount++;
+    }
+
+    // The id of the innermost symbol declared with the identifier, or -1 when there is none
+    public int getSymbol(int identifier) {
+        return hasSymbol(identifier) ? bindings[innermostBindings[identifier]] : -1;
+    }
+
+    // Gives every symbol its offset in the data segment. The symbols of a block are placed like a stack frame on top
+    // of the blocks around it, so the space of a block that has ended is used again by the blocks after it.
+    // The declarations between two inner blocks are placed together: ints first at an even offset, so that every
+    // word is read in one bus cycle, then strings and then booleans, which need no alignment
+    public static void layout(AbstractSyntaxTree syntaxTree, Symbols symbols) {
+        int[] stringSizes = getStringSizes(syntaxTree, symbols);
+        boolean[] isPlaced = getCarriedSymbols(syntaxTree, symbols);
+        int[] group = new int[INITIAL_CAPACITY];
+        int groupSize = 0, maximumSize = 0;
+        for (int symbol = 0; symbol < isPlaced.length; symbol++) {
+            Token dataType = symbols.getDataType(symbol);
+            maximumSize += (dataType == Token.STRING ? stringSizes[symbol] : getSize(dataType)) + 1;
+            if (isPlaced[symbol]) {
+                if (groupSize == group.length) {
+                    group = Arrays.copyOf(group, groupSize * 2);
+                }
+                group[groupSize++] = symbol;
+            }
+        }
+        // The last symbol placed on every byte, to find the symbols that reuse the bytes of another
+        int[] owners = new int[maximumSize];
+        Arrays.fill(owners, -1);
+        // Variables that carry a value between iterations of a loop go under every frame, so no block reuses them
+        int offset = placeGroup(symbols, owners, group, groupSize, stringSizes, FIRST_OFFSET);
+        int[] frameOwners = new int[INITIAL_CAPACITY], frameOffsets = new int[INITIAL_CAPACITY];
+        int frameCount = 0, dataSize = offset;
+        AbstractSyntaxTree.Cursor cursor = syntaxTree.getCursor();
+        do {
+            while (frameCount > 0 && frameOwners[frameCount - 1] != cursor.getParent()) {
+                offset = frameOffsets[--frameCount];
+            }
+            if (cursor.getKind() == NodeKind.DECLARATION && !isPlaced[cursor.getSymbol()]) {
+                groupSize = 0;
+                for (int node = cursor.getNode(); node != -1 && syntaxTree.getFirstChild(node) == -1; node = syntaxTree.getNextSibling(node)) {
+                    if (syntaxTree.getKind(node) == NodeKind.DECLARATION && !isPlaced[syntaxTree.getSymbol(node)]) {
+                        if (groupSize == group.length) {
+                            group = Arrays.copyOf(group, groupSize * 2);
+                        }
+                        group[groupSize++] = syntaxTree.getSymbol(node);
+                        isPlaced[syntaxTree.getSymbol(node)] = true;
+                    }
+                }
+                offset = placeGroup(symbols, owners, group, groupSize, stringSizes, offset);
+                dataSize = Math.max(dataSize, offset);
+            }
+            if (syntaxTree.getFirstChild(cursor.getNode()) != -1) {
+                if (frameCount == frameOwners.length) {
+                    frameOwners = Arrays.copyOf(frameOwners, frameCount * 2);
+                    frameOffsets = Arrays.copyOf(frameOffsets, frameCount * 2);
+                }
+                frameOwners[frameCount] = cursor.getNode();
+                frameOffsets[frameCount++] = offset;
+            }
+        } while (cursor.next());
+        symbols.setDataSize(dataSize);
     }
 
-    public SymbolData getSymbol(String id) {
-        return symbols.get(id);
+    private static int placeGroup(Symbols symbols, int[] owners, int[] group, int groupSize, int[] stringSizes, int offset) {
+        for (int i = 0; i < groupSize; i++) {
+            if (symbols.getDataType(group[i]) == Token.INT && offset % 2 != 0) {
+                offset++;
+                break;
+            }
+        }
+        for (Token dataType : LAYOUT_ORDER) {
+            for (int i = 0; i < groupSize; i++) {
+                int symbol = group[i];
+                if (symbols.getDataType(symbol) != dataType) {
+                    continue;
+                }
+                int size = dataType == Token.STRING ? stringSizes[symbol] : getSize(dataType);
+                place(symbols, owners, symbol, offset, size);
+                offset += size;
+            }
+        }
+        return offset;
     }
 
-    public boolean isAvailable(String id, int position) {
-        if (!hasSymbol(id)) {
-            return false;
+    private static void place(Symbols symbols, int[] owners, int symbol, int offset, int size) {
+        for (int i = offset - FIRST_OFFSET; i < offset + size - FIRST_OFFSET; i++) {
+            if (owners[i] != -1) {
+                symbols.setShared(symbol);
+            }
+            owners[i] = symbol;
+        }
+        symbols.setLayout(symbol, offset, size);
+    }
+
+    // The variables declared in a loop that may be read before they are assigned in their block
+    private static boolean[] getCarriedSymbols(AbstractSyntaxTree syntaxTree, Symbols symbols) {
+        boolean[] isCarried = new boolean[symbols.size()];
+        int[] blocks = new int[symbols.size()];
+        Arrays.fill(blocks, -1);
+        ArrayList<Expression> expressions = new ArrayList<>();
+        AbstractSyntaxTree.Cursor cursor = syntaxTree.getCursor();
+        do {
+            NodeKind kind = cursor.getKind();
+            if (kind == NodeKind.DECLARATION && isInLoop(syntaxTree, cursor.getParent())) {
+                blocks[cursor.getSymbol()] = cursor.getParent();
+                continue;
+            }
+            if (kind == NodeKind.ASSIGNMENT || kind == NodeKind.IF || kind == NodeKind.WHILE) {
+                expressions.add(cursor.getExpression());
+            }
+            while (!expressions.isEmpty()) {
+                Expression expression = expressions.remove(expressions.size() - 1);
+                if (expression instanceof Expression.Binary binary) {
+                    expressions.add(binary.getLeft());
+                    expressions.add(binary.getRight());
+                }
+                else if (expression instanceof Expression.Variable variable && blocks[variable.getSymbol()] != -1) {
+                    isCarried[variable.getSymbol()] = true;
+                    blocks[variable.getSymbol()] = -1;
+                }
+            }
+            if (kind == NodeKind.PRINT && blocks[cursor.getSymbol()] != -1) {
+                isCarried[cursor.getSymbol()] = true;
+                blocks[cursor.getSymbol()] = -1;
+            }
+            if (kind == NodeKind.ASSIGNMENT && blocks[cursor.getSymbol()] == cursor.getParent()) {
+                blocks[cursor.getSymbol()] = -1;
+            }
+        } while (cursor.next());
+        return isCarried;
+    }
+
+    private static boolean isInLoop(AbstractSyntaxTree syntaxTree, int node) {
+        for (; node != -1; node = syntaxTree.getParent(node)) {
+            if (syntaxTree.getKind(node) == NodeKind.WHILE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // A string only needs room for the longest value ever assigned to it and its '$'. The generators write the name
+    // of the variable when a string is assigned another one, so that name counts as a value too
+    private static int[] getStringSizes(AbstractSyntaxTree syntaxTree, Symbols symbols) {
+        int[] stringSizes = new int[symbols.size()];
+        Arrays.fill(stringSizes, 1);
+        AbstractSyntaxTree.Cursor cursor = syntaxTree.getCursor();
+        do {
+            if (cursor.getKind() != NodeKind.ASSIGNMENT || symbols.getDataType(cursor.getSymbol()) != Token.STRING) {
+                continue;
+            }
+            int length;
+            if (cursor.getExpression() instanceof Expression.Variable variable) {
+                length = syntaxTree.getIdentifiers().getName(variable.getIdentifier()).length();
+            }
+            else {
+                length = ((Expression.Literal) cursor.getExpression()).getValue().length();
+            }
+            stringSizes[cursor.getSymbol()] = Math.max(stringSizes[cursor.getSymbol()], length + 1);
+        } while (cursor.next());
+        return stringSizes;
+    }
+
+    // The size of a variable in the original layout, where every string took 100 bytes
+    public static int getSize(Token dataType) {
+        if (dataType == Token.INT) {
+            return 2;
+        }
+        if (dataType == Token.BOOLEAN) {
+            return 1;
+        }
+        return 100;
+    }
+
+    // Every symbol with its place in the data segment, and how the segment compares to the original layout
+    public static String getLayoutReport(Symbols symbols) {
+        long[] order = new long[symbols.size()];
+        int originalSize = FIRST_OFFSET, usedSize = FIRST_OFFSET;
+        for (int i = 0; i < order.length; i++) {
+            order[i] = (long) symbols.getOffset(i) << 32 | i;
+            originalSize += getSize(symbols.getDataType(i));
+        }
+        Arrays.sort(order);
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-6s %-6s %-8s %s%n", "Offset", "Size", "Type", "Variable"));
+        int padding = 0, end = FIRST_OFFSET;
+        for (long entry : order) {
+            int symbol = (int) entry;
+            int offset = symbols.getOffset(symbol), size = symbols.getSize(symbol);
+            if (offset > end) {
+                padding += offset - end;
+            }
+            end = Math.max(end, offset + size);
+            report.append(String.format("%04X   %-6d %-8s %s%s%n", offset, size,
+                    symbols.getDataType(symbol).name().toLowerCase(), symbols.getFullId(symbol),
+                    symbols.isShared(symbol) ? " (shared)" : ""));
         }
-        return position <= symbols.get(id).position();
+        report.append(String.format("Original layout: %d bytes%n", originalSize));
+        report.append(String.format("New layout:      %d bytes, %d of them alignment padding%n", symbols.getDataSize(), padding));
+        return report.toString();
     }
 }
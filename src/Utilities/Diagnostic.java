@@ -0,0 +1,4 @@
+package Utilities;
+
+public record Diagnostic(int position, String message) {
+}
@@ -0,0 +1,68 @@
+package Utilities;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public final class Serialization {
+    private Serialization() {
+    }
+
+    // Small non-negative values take a single byte, seven bits of the value per byte
+    public static void writeVarInts(DataOutputStream out, int[] values, int length) throws IOException {
+        byte[] bytes = new byte[1 << 16];
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (count > bytes.length - 5) {
+                out.write(bytes, 0, count);
+                count = 0;
+            }
+            int value = values[i];
+            while ((value & ~0x7f) != 0) {
+                bytes[count++] = (byte) (value | 0x80);
+                value >>>= 7;
+            }
+            bytes[count++] = (byte) value;
+        }
+        out.write(bytes, 0, count);
+    }
+
+    public static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte(value | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int[] readVarInts(ByteBuffer in, int length) {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = readVarInt(in);
+        }
+        return values;
+    }
+
+    public static int readVarInt(ByteBuffer in) {
+        int value = 0, shift = 0;
+        byte next;
+        while ((next = in.get()) < 0) {
+            value |= (next & 0x7f) << shift;
+            shift += 7;
+        }
+        return value | next << shift;
+    }
+
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
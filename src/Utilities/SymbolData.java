@@ -1,4 +0,0 @@
-package Utilities;
-
-public record SymbolData(Token dataType, int position, String fullId, int offset) {
-}
\ No newline at end of file
@@ -0,0 +1,118 @@
+package Utilities;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Every declared symbol has an id, its number among the declarations in document order, which indexes its data type,
+// declaration position, name and its place in the data segment, which the layout fills in once every symbol is known
+public class Symbols {
+    private static final Token[] TOKENS = Token.values();
+    private byte[] dataTypes;
+    private int[] positions, offsets, sizes;
+    private boolean[] shared;
+    private String[] fullIds;
+    private int size, dataSize;
+
+    public Symbols(int size) {
+        dataTypes = new byte[size];
+        positions = new int[size];
+        offsets = new int[size];
+        sizes = new int[size];
+        shared = new boolean[size];
+        fullIds = new String[size];
+        this.size = size;
+        dataSize = 0;
+    }
+
+    // Symbols are set by id rather than added, so the blocks of a program can be analyzed in any order
+    public void set(int symbol, Token dataType, int position, String fullId) {
+        dataTypes[symbol] = (byte) dataType.ordinal();
+        positions[symbol] = position;
+        fullIds[symbol] = fullId;
+    }
+
+    // Keeps only the symbols declared before an analysis stopped
+    public void truncate(int size) {
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Token getDataType(int symbol) {
+        return TOKENS[dataTypes[symbol]];
+    }
+
+    public int getPosition(int symbol) {
+        return positions[symbol];
+    }
+
+    public int getOffset(int symbol) {
+        return offsets[symbol];
+    }
+
+    public String getFullId(int symbol) {
+        return fullIds[symbol];
+    }
+
+    public void setLayout(int symbol, int offset, int size) {
+        offsets[symbol] = offset;
+        sizes[symbol] = size;
+    }
+
+    public int getSize(int symbol) {
+        return sizes[symbol];
+    }
+
+    // A shared symbol reuses bytes of a symbol placed before it, so it can not rely on the initial contents of the data segment
+    public void setShared(int symbol) {
+        shared[symbol] = true;
+    }
+
+    public boolean isShared(int symbol) {
+        return shared[symbol];
+    }
+
+    public void setDataSize(int dataSize) {
+        this.dataSize = dataSize;
+    }
+
+    // The end of the last byte used by any symbol
+    public int getDataSize() {
+        return dataSize;
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(dataSize);
+        out.write(dataTypes, 0, size);
+        Serialization.writeVarInts(out, positions, size);
+        Serialization.writeVarInts(out, offsets, size);
+        Serialization.writeVarInts(out, sizes, size);
+        for (int i = 0; i < size; i++) {
+            out.writeBoolean(shared[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            Serialization.writeString(out, fullIds[i]);
+        }
+    }
+
+    public static Symbols read(ByteBuffer in) {
+        int size = in.getInt();
+        Symbols symbols = new Symbols(size);
+        symbols.dataSize = in.getInt();
+        in.get(symbols.dataTypes);
+        symbols.positions = Serialization.readVarInts(in, size);
+        symbols.offsets = Serialization.readVarInts(in, size);
+        symbols.sizes = Serialization.readVarInts(in, size);
+        for (int i = 0; i < size; i++) {
+            symbols.shared[i] = in.get() != 0;
+        }
+        for (int i = 0; i < size; i++) {
+            symbols.fullIds[i] = Serialization.readString(in);
+        }
+        return symbols;
+    }
+}
@@ -1,9 +1,29 @@
 package Utilities;
 
+import static Utilities.TokenClass.*;
+
 public enum Token {
-    SEMICOLON, OP_PAREN, CL_PAREN, OP_CURLY, CL_CURLY, QUOTES,
-    ASSIGN, PLUS, MINUS,
-    LESS, LESS_EQ, GREATER, GREATER_EQ, EQUALS, DIFFERENT,
-    CODE, SCAN, PRINT, IF, WHILE, INT, BOOLEAN, STRING, TRUE, FALSE, STRING_VALUE,
-    IDENTIFIER, NUMBER, ERROR, RW
+    SEMICOLON(0), OP_PAREN(0), CL_PAREN(0), OP_CURLY(0), CL_CURLY(0), QUOTES(0),
+    ASSIGN(0), PLUS(ARITHMETIC_OPERATOR), MINUS(ARITHMETIC_OPERATOR),
+    LESS(RELATIONAL_OPERATOR), LESS_EQ(RELATIONAL_OPERATOR),
+    GREATER(RELATIONAL_OPERATOR), GREATER_EQ(RELATIONAL_OPERATOR),
+    EQUALS(RELATIONAL_OPERATOR | EQUALITY_OPERATOR), DIFFERENT(RELATIONAL_OPERATOR | EQUALITY_OPERATOR),
+    CODE(KEYWORD), SCAN(KEYWORD), PRINT(KEYWORD), IF(KEYWORD), WHILE(KEYWORD),
+    INT(KEYWORD | DATA_TYPE), BOOLEAN(KEYWORD | DATA_TYPE), STRING(KEYWORD | DATA_TYPE),
+    TRUE(KEYWORD | LITERAL | BOOLEAN_LITERAL), FALSE(KEYWORD | LITERAL | BOOLEAN_LITERAL), STRING_VALUE(LITERAL),
+    IDENTIFIER(0), NUMBER(LITERAL), ERROR(0), RW(0);
+
+    private final int classes;
+
+    Token(int classes) {
+        this.classes = classes;
+    }
+
+    public boolean is(int tokenClasses) {
+        return (classes & tokenClasses) != 0;
+    }
+
+    public int getClasses() {
+        return classes;
+    }
 }
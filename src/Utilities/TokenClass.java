@@ -0,0 +1,15 @@
+package Utilities;
+
+public final class TokenClass {
+    public static final int KEYWORD = 1;
+    public static final int DATA_TYPE = 1 << 1;
+    public static final int LITERAL = 1 << 2;
+    public static final int BOOLEAN_LITERAL = 1 << 3;
+    public static final int ARITHMETIC_OPERATOR = 1 << 4;
+    public static final int RELATIONAL_OPERATOR = 1 << 5;
+    public static final int EQUALITY_OPERATOR = 1 << 6;
+    public static final int OPERATOR = ARITHMETIC_OPERATOR | RELATIONAL_OPERATOR;
+
+    private TokenClass() {
+    }
+}